@@ -29,11 +29,7 @@ public class AdvancedAgent extends Agent {
     }
 
     public int randomMove() {
-        int var1;
-        for(var1 = this.r.nextInt(this.myGame.getColumnCount()); this.getTopEmptySlot(this.myGame.getColumn(var1)) == null; var1 = this.r.nextInt(this.myGame.getColumnCount())) {
-        }
-
-        return var1;
+        return this.myGame.getLegalMove(this.r.nextInt(this.myGame.getLegalMoveCount()));
     }
 
     public void moveOnColumn(int var1) {
@@ -49,14 +45,7 @@ public class AdvancedAgent extends Agent {
     }
 
     public Connect4Slot getTopEmptySlot(Connect4Column var1) {
-        int var2 = -1;
-
-        for(int var3 = 0; var3 < var1.getRowCount(); ++var3) {
-            if (!var1.getSlot(var3).getIsFilled()) {
-                var2 = var3;
-            }
-        }
-
+        int var2 = var1.getTopEmptyIndex();
         if (var2 < 0) {
             return null;
         } else {
@@ -65,48 +54,7 @@ public class AdvancedAgent extends Agent {
     }
 
     public int canWin(boolean var1) {
-        for(int var2 = 0; var2 < this.myGame.getColumnCount(); ++var2) {
-            int var3 = this.getTopEmptyIndex(this.myGame.getColumn(var2));
-            if (var3 > -1) {
-                if (var3 < this.myGame.getRowCount() - 3 && this.myGame.getColumn(var2).getSlot(var3 + 1).getIsRed() == var1 && this.myGame.getColumn(var2).getSlot(var3 + 2).getIsRed() == var1 && this.myGame.getColumn(var2).getSlot(var3 + 3).getIsRed() == var1) {
-                    return var2;
-                }
-
-                if (var2 < this.myGame.getColumnCount() - 3 && this.checkIfEqual(var1, this.myGame.getColumn(var2 + 1).getSlot(var3), this.myGame.getColumn(var2 + 2).getSlot(var3), this.myGame.getColumn(var2 + 3).getSlot(var3))) {
-                    return var2;
-                }
-
-                if (var2 < this.myGame.getColumnCount() - 2 && var2 > 0 && this.checkIfEqual(var1, this.myGame.getColumn(var2 - 1).getSlot(var3), this.myGame.getColumn(var2 + 1).getSlot(var3), this.myGame.getColumn(var2 + 2).getSlot(var3))) {
-                    return var2;
-                }
-
-                if (var2 < this.myGame.getColumnCount() - 1 && var2 > 1 && this.checkIfEqual(var1, this.myGame.getColumn(var2 - 1).getSlot(var3), this.myGame.getColumn(var2 + 1).getSlot(var3), this.myGame.getColumn(var2 - 2).getSlot(var3))) {
-                    return var2;
-                }
-
-                if (var2 > 2 && this.checkIfEqual(var1, this.myGame.getColumn(var2 - 1).getSlot(var3), this.myGame.getColumn(var2 - 3).getSlot(var3), this.myGame.getColumn(var2 - 2).getSlot(var3))) {
-                    return var2;
-                }
-
-                if (var2 < this.myGame.getColumnCount() - 3 && var3 < this.myGame.getRowCount() - 3 && this.checkIfEqual(var1, this.myGame.getColumn(var2 + 1).getSlot(var3 + 1), this.myGame.getColumn(var2 + 3).getSlot(var3 + 3), this.myGame.getColumn(var2 + 2).getSlot(var3 + 2))) {
-                    return var2;
-                }
-
-                if (var2 < this.myGame.getColumnCount() && var2 > 2 && var3 < this.myGame.getRowCount() && var3 > 2 && this.checkIfEqual(var1, this.myGame.getColumn(var2 - 1).getSlot(var3 - 1), this.myGame.getColumn(var2 - 2).getSlot(var3 - 2), this.myGame.getColumn(var2 - 3).getSlot(var3 - 3))) {
-                    return var2;
-                }
-
-                if (var2 > 2 && var2 < this.myGame.getColumnCount() && var3 < this.myGame.getRowCount() - 3 && var3 >= 0 && this.checkIfEqual(var1, this.myGame.getColumn(var2 - 1).getSlot(var3 + 1), this.myGame.getColumn(var2 - 2).getSlot(var3 + 2), this.myGame.getColumn(var2 - 3).getSlot(var3 + 3))) {
-                    return var2;
-                }
-
-                if (var2 >= 0 && var2 < this.myGame.getColumnCount() - 3 && var3 < this.myGame.getRowCount() && var3 > 2 && this.checkIfEqual(var1, this.myGame.getColumn(var2 + 3).getSlot(var3 - 3), this.myGame.getColumn(var2 + 2).getSlot(var3 - 2), this.myGame.getColumn(var2 + 1).getSlot(var3 - 1))) {
-                    return var2;
-                }
-            }
-        }
-
-        return -1;
+        return WinningMoves.firstColumn(this.myGame, var1, WinningMoves.VERTICAL | WinningMoves.HORIZONTAL_ENDS | WinningMoves.HORIZONTAL_GAPS | WinningMoves.DIAGONAL_ENDS);
     }
 
     public boolean checkIfEqual(boolean var1, Connect4Slot var2, Connect4Slot var3, Connect4Slot var4) {
@@ -114,15 +62,11 @@ public class AdvancedAgent extends Agent {
     }
 
     public int getTopEmptyIndex(Connect4Column var1) {
-        int var2 = -1;
-
-        for(int var3 = 0; var3 < var1.getRowCount(); ++var3) {
-            if (!var1.getSlot(var3).getIsFilled()) {
-                var2 = var3;
-            }
-        }
+        return var1.getTopEmptyIndex();
+    }
 
-        return var2;
+    public void reseed(long var1) {
+        this.r.setSeed(var1);
     }
 
     public String getName() {
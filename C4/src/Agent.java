@@ -39,6 +39,16 @@ public abstract class Agent
      * @return the agent's name.
      */
     public abstract String getName();
+    /**
+     * Reseeds any random number generator the agent uses, so that a game can be replayed
+     * exactly. Agents that make no random choices can ignore this.
+     *
+     *
+     * @param seed the new seed.
+     */
+    public void reseed(long seed)
+    {
+    }
     /**
      * The way the agent's name is displayed in the game, with its color.
      *
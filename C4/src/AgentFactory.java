@@ -0,0 +1,15 @@
+/**
+ * Creates agents for a game. Every agent's constructor has this shape, so a factory is usually just
+ * a constructor reference such as MyAgent::new. Parallel tournaments use factories to give each
+ * worker thread its own agents on its own game.
+ */
+public interface AgentFactory {
+    /**
+     * Creates a new agent.
+     *
+     * @param game   the game for the agent to play.
+     * @param iAmRed whether the agent is the red player.
+     * @return the new agent.
+     */
+    Agent create(Connect4Game game, boolean iAmRed);
+}
@@ -0,0 +1,67 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures how much memory MyAgent allocates per move. Games between two MyAgents are played from
+ * seeded random openings, and the bytes the thread allocates during each move() are read from the
+ * JVM's per-thread allocation counter. The first games only warm up the JIT and the agents' scratch
+ * arrays, so the measured moves are the ones a long tournament would see.
+ *
+ * Usage: java AllocationBenchmark [--games N] [--depth D] [--seed S]
+ */
+public class AllocationBenchmark {
+    public static void main(String[] args) {
+        int games = 100;
+        int depth = 8;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--games")) games = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--depth")) depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Connect4Game game = new Connect4Game(7, 6);
+        MyAgent red = new MyAgent(game, true);
+        MyAgent yellow = new MyAgent(game, false);
+        for (MyAgent agent : new MyAgent[]{red, yellow}) {
+            agent.setSearchDepth(depth);
+            agent.setOpeningBook(null); // measure the search, not the book
+        }
+
+        Random r = new Random(seed);
+        playGames(games / 4, game, red, yellow, r, threads, thread, new long[3]); // warm up
+
+        long[] totals = new long[3]; // moves, bytes, the most bytes in one move
+        playGames(games, game, red, yellow, r, threads, thread, totals);
+        System.out.printf("%d moves at depth %d: %.1f bytes per move on average, %d at most%n",
+                totals[0], depth, (double) totals[1] / totals[0], totals[2]);
+    }
+
+    /**
+     * Plays games that start with four random moves, measuring every move MyAgent makes.
+     *
+     * @param totals adds the number of moves to [0], the bytes allocated to [1] and keeps the largest move in [2]
+     */
+    private static void playGames(int games, Connect4Game game, MyAgent red, MyAgent yellow, Random r,
+                                  com.sun.management.ThreadMXBean threads, long thread, long[] totals) {
+        for (int g = 0; g < games; g++) {
+            game.clearBoard();
+            game.setRedPlayedFirst(true);
+            for (int i = 0; i < 4 && game.gameWon() == 'N'; i++) {
+                game.play(game.getLegalMove(r.nextInt(game.getLegalMoveCount())));
+            }
+
+            while (game.gameWon() == 'N' && !game.boardFull()) {
+                long before = threads.getThreadAllocatedBytes(thread);
+                (game.sideToMove() == 'R' ? red : yellow).move();
+                long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+                totals[0]++;
+                totals[1] += allocated;
+                totals[2] = Math.max(totals[2], allocated);
+            }
+        }
+    }
+}
@@ -0,0 +1,241 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmarks of the board's and the agents' hot paths, so claims about their speed can be checked. Every benchmark
+ * runs over the same seeded set of positions, cycling through them, and reports operations per second and the bytes
+ * allocated per operation, read from the JVM's per-thread allocation counter. Each one is warmed up first, so the
+ * JIT has compiled it before it is measured.
+ *
+ * Benchmarks that move on a position take the move back with Connect4Game.undo(), so the positions are the same for
+ * every operation. MyAgent forgets its transposition table before each search, so a fixed-depth search costs the
+ * same each time it sees a position.
+ *
+ * Usage: java Benchmarks [--filter TEXT] [--positions N] [--seed S] [--warmup SECONDS] [--time SECONDS]
+ */
+public class Benchmarks {
+    private static long sink; // results are added here so the JIT can't drop the work that made them
+
+    /**
+     * One benchmark operation.
+     */
+    private interface Operation {
+        /**
+         * @param i which position to use
+         * @return anything computed from the position, to keep the work from being optimized away
+         */
+        long run(int i);
+    }
+
+    public static void main(String[] args) {
+        String filter = "";
+        int numPositions = 64;
+        long seed = 1;
+        double warmupSeconds = 1;
+        double seconds = 2;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--filter")) filter = args[++i];
+            else if (args[i].equals("--positions")) numPositions = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--warmup")) warmupSeconds = Double.parseDouble(args[++i]);
+            else if (args[i].equals("--time")) seconds = Double.parseDouble(args[++i]);
+        }
+
+        List<Connect4Game> positions = buildPositions(numPositions, new Random(seed));
+        Map<String, Operation> benchmarks = createBenchmarks(positions, seed);
+
+        System.out.printf("%d positions, seed %d%n", positions.size(), seed);
+        System.out.printf("%-28s %14s %14s %14s %12s%n", "benchmark", "ops/s", "ns/op", "bytes/op", "MB/s");
+        for (Map.Entry<String, Operation> benchmark : benchmarks.entrySet()) {
+            if (!benchmark.getKey().contains(filter)) continue;
+            measure(benchmark.getValue(), positions.size(), warmupSeconds); // warm up
+            double[] result = measure(benchmark.getValue(), positions.size(), seconds);
+            System.out.printf("%-28s %14.0f %14.1f %14.1f %12.1f%n", benchmark.getKey(),
+                    result[0], 1e9 / result[0], result[1], result[0] * result[1] / 1e6);
+        }
+        if (sink == 42) System.out.println(); // uses the sink
+    }
+
+    /**
+     * Sets up every benchmark. Each gets its own games and agents, so none changes the positions of another.
+     *
+     * @param positions the positions to run on
+     * @param seed      reseeds every agent, so agents that pick moves at random pick the same ones on every run
+     * @return the benchmarks by name, in the order to run them
+     */
+    private static Map<String, Operation> createBenchmarks(List<Connect4Game> positions, long seed) {
+        Map<String, Operation> benchmarks = new LinkedHashMap<>();
+        Connect4Game[] games = copies(positions);
+
+        benchmarks.put("Connect4Game.gameWon", i -> games[i].gameWon());
+        benchmarks.put("play + gameWon + undo", i -> {
+            Connect4Game game = games[i];
+            game.play(game.getLegalMove(0));
+            char winner = game.gameWon();
+            game.undo();
+            return winner;
+        });
+        benchmarks.put("Connect4Game.boardFull", i -> games[i].boardFull() ? 1 : 0);
+        benchmarks.put("Connect4Game.getBoardMatrix", i -> games[i].getBoardMatrix().length);
+        benchmarks.put("Connect4Game copy", i -> new Connect4Game(games[i]).getLegalMoveMask());
+
+        Connect4Game[] after = copies(positions);
+        for (Connect4Game game : after) {
+            game.play(game.getLegalMove(game.getLegalMoveCount() / 2));
+        }
+        benchmarks.put("Connect4Game.validate", i -> games[i].validate(after[i]).length());
+        BoardSnapshot[] snapshots = new BoardSnapshot[positions.size()];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = new BoardSnapshot(games[i]);
+        }
+        benchmarks.put("copy + validate", i -> new Connect4Game(games[i]).validate(after[i]).length());
+        benchmarks.put("snapshot + validate", i -> {
+            snapshots[i].take(games[i]);
+            return snapshots[i].validate(after[i]).length();
+        });
+
+        Connect4BitBoard[] boards = new Connect4BitBoard[positions.size()];
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Connect4BitBoard(7, 6);
+            boards[i].load(positions.get(i), positions.get(i).sideToMove() == 'R');
+        }
+        MyAgent evaluator = new MyAgent(copies(positions)[0], true);
+        evaluator.prepareSearch();
+        benchmarks.put("MyAgent.evaluateBoard", i -> evaluator.evaluateBoard(boards[i], 0));
+
+        // clearing the table is part of every minimax benchmark below, so it is timed on its own too
+        benchmarks.put("MyAgent.newGame", i -> {
+            evaluator.newGame();
+            return i;
+        });
+        for (int depth : new int[]{4, 6, 8}) {
+            Connect4Game[] searched = copies(positions);
+            Agent[][] agents = agents(searched, MyAgent::new, seed);
+            for (Agent[] pair : agents) {
+                for (Agent agent : pair) {
+                    ((MyAgent) agent).setSearchDepth(depth);
+                    ((MyAgent) agent).setOpeningBook(null); // time the search, not a lookup
+                    ((MyAgent) agent).setEndgameThreshold(0);
+                }
+            }
+            benchmarks.put("MyAgent.minimax depth " + depth, i -> {
+                MyAgent agent = (MyAgent) agents[i][side(searched[i])];
+                agent.newGame();
+                return moveAndUndo(searched[i], agent);
+            });
+        }
+
+        AgentFactory[] baselines = {RandomAgent::new, BeginnerAgent::new, IntermediateAgent::new, AdvancedAgent::new,
+                BrilliantAgent::new};
+        for (AgentFactory factory : baselines) {
+            Connect4Game[] played = copies(positions);
+            Agent[][] agents = agents(played, factory, seed);
+            benchmarks.put(agents[0][0].getClass().getSimpleName() + ".move",
+                    i -> moveAndUndo(played[i], agents[i][side(played[i])]));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Runs a benchmark for a while.
+     *
+     * @param operation the benchmark
+     * @param positions the number of positions to cycle through
+     * @param seconds   how long to run for
+     * @return the operations per second and the bytes allocated per operation
+     */
+    private static double[] measure(Operation operation, int positions, double seconds) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long operations = 0;
+        long result = 0;
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long end = start + (long) (seconds * 1e9);
+        long now;
+        do {
+            // a batch of a few passes over the positions between looks at the clock
+            for (int pass = 0; pass < 4; pass++) {
+                for (int i = 0; i < positions; i++) {
+                    result += operation.run(i);
+                }
+            }
+            operations += 4L * positions;
+            now = System.nanoTime();
+        } while (now < end);
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        sink += result;
+
+        return new double[]{operations / ((now - start) / 1e9), (double) bytes / operations};
+    }
+
+    /**
+     * Builds positions that start with red and have a random number of random moves, none won or full.
+     *
+     * @param numPositions the number of positions to build
+     * @param r            the random number generator choosing the moves
+     * @return the positions
+     */
+    private static List<Connect4Game> buildPositions(int numPositions, Random r) {
+        List<Connect4Game> positions = new ArrayList<>();
+        while (positions.size() < numPositions) {
+            Connect4Game game = new Connect4Game(7, 6);
+            game.setRedPlayedFirst(true);
+            int moves = 4 + r.nextInt(27);
+            for (int i = 0; i < moves && game.gameWon() == 'N'; i++) {
+                game.play(game.getLegalMove(r.nextInt(game.getLegalMoveCount())));
+            }
+            if (game.gameWon() == 'N' && !game.boardFull()) positions.add(game);
+        }
+        return positions;
+    }
+
+    private static Connect4Game[] copies(List<Connect4Game> positions) {
+        Connect4Game[] games = new Connect4Game[positions.size()];
+        for (int i = 0; i < games.length; i++) {
+            games[i] = new Connect4Game(positions.get(i));
+        }
+        return games;
+    }
+
+    /**
+     * Creates a yellow and a red agent for every game.
+     *
+     * @return the agents, with [i][0] yellow and [i][1] red on game i
+     */
+    private static Agent[][] agents(Connect4Game[] games, AgentFactory factory, long seed) {
+        Agent[][] agents = new Agent[games.length][2];
+        for (int i = 0; i < games.length; i++) {
+            for (int side = 0; side < 2; side++) {
+                agents[i][side] = factory.create(games[i], side == 1);
+                agents[i][side].reseed(seed);
+            }
+        }
+        return agents;
+    }
+
+    private static int side(Connect4Game game) {
+        return game.sideToMove() == 'R' ? 1 : 0;
+    }
+
+    /**
+     * Lets an agent move and takes the move back.
+     *
+     * @return the column the agent played
+     */
+    private static long moveAndUndo(Connect4Game game, Agent agent) {
+        int tokens = game.moveCount();
+        agent.move();
+        if (game.moveCount() != tokens + 1) {
+            throw new IllegalStateException(agent.getName() + " didn't make exactly one move");
+        }
+        int col = game.getLastMove();
+        game.undo();
+        return col;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * A record of the board before a move, for checking the move once it has been made. Taking a snapshot copies two
+ * words per column, the column's filled slots and red slots as bit masks, and validating compares them with the
+ * columns of the board after the move. Both run in time proportional to the number of columns and allocate nothing,
+ * where copying the board with new Connect4Game(game) and comparing it slot by slot with Connect4Game.validate()
+ * walks and allocates every slot.
+ *
+ * validate() finds the same invalid moves as Connect4Game.validate() and reports them with the same messages. Boards
+ * with columns of more than 64 rows don't fit the masks, so for them a snapshot falls back on copying the board.
+ */
+public class BoardSnapshot {
+    private final int columnCount;
+    private final int rowCount;
+    private final long[] filled; // the filled slots of each column, as Connect4Column.getFilledMask() gives them
+    private final long[] red; // the red slots of each column
+    private final long lowerRows; // every row but the bottom one, whose slots need a filled slot below them
+    private Connect4Game copy; // the board itself, when its columns are too tall for the masks
+
+    /**
+     * Creates a snapshot of a board. The snapshot can be taken again with take() before each move.
+     *
+     * @param game the board
+     */
+    public BoardSnapshot(Connect4Game game) {
+        columnCount = game.getColumnCount();
+        rowCount = game.getRowCount();
+        filled = new long[columnCount];
+        red = new long[columnCount];
+        lowerRows = (1L << (rowCount - 1)) - 1;
+        take(game);
+    }
+
+    /**
+     * Records the board as it is now.
+     *
+     * @param game the board, the same size as the one the snapshot was created for
+     */
+    public void take(Connect4Game game) {
+        if (rowCount > 64) {
+            copy = new Connect4Game(game);
+            return;
+        }
+        for (int i = 0; i < columnCount; i++) {
+            Connect4Column column = game.getColumn(i);
+            filled[i] = column.getFilledMask();
+            red[i] = column.getRedMask();
+        }
+    }
+
+    /**
+     * Checks that the board went from the snapshot to its current state with a single token dropped by the player
+     * whose turn it was, exactly as Connect4Game.validate() does.
+     *
+     * @param after the board after the move
+     * @return a message describing the first problem found, or an empty string if the move was valid
+     */
+    public String validate(Connect4Game after) {
+        if (copy != null) return copy.validate(after);
+        int filledSlots = 0, redSlots = 0, yellowSlots = 0;
+        for (int i = 0; i < columnCount; i++) {
+            Connect4Column column = after.getColumn(i);
+            long filledAfter = column.getFilledMask();
+            long redAfter = column.getRedMask();
+            long removed = filled[i] & ~filledAfter;
+            long changed = filled[i] & (red[i] ^ redAfter);
+            long floating = filledAfter & ~(filledAfter >>> 1) & lowerRows; // filled with an empty slot below
+            long problems = removed | changed | floating;
+            if (problems != 0) {
+                // Connect4Game.validate() scans down each column and checks each slot in this order
+                int j = Long.numberOfTrailingZeros(problems);
+                if ((removed >>> j & 1) != 0) {
+                    return "Invalid move: a token was removed at column " + i + ", row " + j + ".";
+                }
+                if ((changed >>> j & 1) != 0) {
+                    return "Invalid move: a token was changed at column " + i + ", row " + j + ".";
+                }
+                return "Invalid move: a token in column " + i + " was not placed in the highest open slot.";
+            }
+            filledSlots += Long.bitCount(filledAfter & ~filled[i]);
+            redSlots += Long.bitCount(redAfter);
+            yellowSlots += Long.bitCount(filledAfter & ~redAfter);
+        }
+        if (filledSlots > 1) {
+            return "Invalid move: more than one token was placed.";
+        }
+        if (filledSlots == 0) {
+            return "Invalid move: no move was made.";
+        }
+        if (after.getRedPlayedFirst()) {
+            if (redSlots < yellowSlots) {
+                return "Invalid move: yellow moved during red's turn.";
+            } else if (redSlots > yellowSlots + 1) {
+                return "Invalid move: red moved during yellow's turn.";
+            }
+        } else {
+            if (yellowSlots < redSlots) {
+                return "Invalid move: red moved during yellow's turn.";
+            } else if (yellowSlots > redSlots + 1) {
+                return "Invalid move: yellow moved during red's turn.";
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Finds the column of a move that validate() accepted: the one column whose slots changed.
+     *
+     * @param after the board after the move
+     * @return the column the token was dropped in, or -1 if no column changed
+     */
+    public int changedColumn(Connect4Game after) {
+        for (int i = 0; i < columnCount; i++) {
+            boolean changed = copy != null ? after.getHeight(i) != copy.getHeight(i)
+                    : after.getColumn(i).getFilledMask() != filled[i];
+            if (changed) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the opening book that MyAgent reads. Every position of the first few plies is found, with a
+ * position and its mirror image counted once, and each is searched deeper than MyAgent searches
+ * during a game. The best columns are written to a book file with OpeningBook.write(). MyAgent only
+ * plays from a book it is given, for example with GraderRunner --book FILE.
+ *
+ * Usage: java BookGenerator [--plies N] [--depth D] [--threads T] [--out FILE]
+ */
+public class BookGenerator {
+    public static void main(String[] args) throws IOException {
+        int plies = 8;
+        int depth = 12;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String out = OpeningBook.DEFAULT_FILE;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--plies")) plies = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--depth")) depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--out")) out = args[++i];
+        }
+
+        Connect4BitBoard board = new Connect4BitBoard(7, 6);
+        List<int[]> openings = new ArrayList<>();
+        findPositions(board, plies, new int[plies], new HashSet<>(), openings);
+        System.out.printf("Searching %d positions of the first %d plies to depth %d on %d thread(s)%n",
+                openings.size(), plies, depth, threads);
+
+        long start = System.nanoTime();
+        long[] keys = new long[openings.size()];
+        byte[] moves = new byte[openings.size()];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> columns = new ArrayList<>();
+        for (int[] opening : openings) {
+            final int searchDepth = depth;
+            columns.add(pool.submit(() -> searchOpening(opening, searchDepth)));
+        }
+
+        try {
+            for (int i = 0; i < openings.size(); i++) {
+                Connect4BitBoard position = new Connect4BitBoard(7, 6);
+                for (int col : openings.get(i)) position.play(col);
+
+                long key = position.getPositionKey();
+                long mirrored = position.mirrorKey(key);
+                int col = columns.get(i).get();
+                keys[i] = Math.min(key, mirrored);
+                moves[i] = (byte) (mirrored < key ? position.getColumnCount() - 1 - col : col);
+
+                if ((i + 1) % 1000 == 0) {
+                    System.out.printf("%d/%d positions, %.0f s%n", i + 1, openings.size(), (System.nanoTime() - start) / 1e9);
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("A book search failed", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        OpeningBook.write(Paths.get(out), board.getColumnCount(), board.getRowCount(), keys, moves);
+        System.out.printf("Wrote %d positions to %s in %.0f s%n", keys.length, out, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Finds every position with fewer than the given number of tokens where nobody has won yet, skipping positions
+     * that are the same as, or the mirror image of, one already found.
+     *
+     * @param board    the position reached so far
+     * @param plies    the number of plies the book covers
+     * @param moves    the columns played to reach the position
+     * @param seen     the smaller of the key and mirrored key of every position found
+     * @param openings the moves leading to each position found
+     */
+    private static void findPositions(Connect4BitBoard board, int plies, int[] moves, Set<Long> seen,
+                                      List<int[]> openings) {
+        long key = board.getPositionKey();
+        if (!seen.add(Math.min(key, board.mirrorKey(key)))) return;
+
+        int ply = board.getTokenCount();
+        openings.add(Arrays.copyOf(moves, ply));
+        if (ply + 1 >= plies) return;
+
+        for (int col = 0; col < board.getColumnCount(); col++) {
+            if (!board.canPlay(col)) continue;
+            board.play(col);
+            moves[ply] = col;
+            if (!board.lastMoveWon()) findPositions(board, plies, moves, seen, openings);
+            board.undo();
+        }
+    }
+
+    /**
+     * Plays out an opening on a game with red moving first and lets a new MyAgent search it.
+     *
+     * @param opening the columns played to reach the position
+     * @param depth   the depth to search to
+     * @return the column MyAgent chose
+     */
+    private static int searchOpening(int[] opening, int depth) {
+        Connect4Game game = new Connect4Game(7, 6);
+        game.setRedPlayedFirst(true);
+        for (int col : opening) {
+            game.play(col);
+        }
+
+        MyAgent agent = new MyAgent(game, game.sideToMove() == 'R');
+        agent.setOpeningBook(null); // search the position rather than look up an older book
+        agent.setSearchDepth(depth);
+        agent.move();
+
+        if (game.moveCount() != opening.length + 1) {
+            throw new IllegalStateException("MyAgent didn't move");
+        }
+        return game.getLastMove();
+    }
+}
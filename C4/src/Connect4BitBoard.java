@@ -0,0 +1,359 @@
+/**
+ * A packed bitboard form of a Connect 4 position, used by MyAgent's search instead of walking the
+ * Connect4Column/Connect4Slot objects.
+ *
+ * Every column takes (rows + 1) bits: one bit per slot, counted from the bottom of the column, plus
+ * an always-empty sentinel bit on top that keeps lines from wrapping into the next column. The whole
+ * position is two longs, the tokens of the player to move and the occupied cells, so the board must
+ * fit in 64 bits (7x6 uses 49).
+ */
+public class Connect4BitBoard {
+    private final int columnCount;
+    private final int rowCount;
+    private final int stride; // bits per column, including the sentinel
+    private final long bottom; // the bottom slot of every column
+
+    private long current; // tokens of the player to move
+    private long mask;    // every occupied cell
+    private boolean redToMove;
+    private long hash; // Zobrist hash of the tokens and the player to move
+
+    private final int[] heights; // number of tokens in each column
+    private final int[] moveStack; // columns played since the last load, for undo()
+    private int stackSize;
+    private int tokenCount;
+
+    /**
+     * Creates an empty bitboard with the given size.
+     *
+     * @param columnCount the number of columns on the board
+     * @param rowCount the number of rows on the board
+     */
+    public Connect4BitBoard(int columnCount, int rowCount) {
+        if (!fits(columnCount, rowCount)) {
+            throw new IllegalArgumentException("A " + columnCount + "x" + rowCount + " board does not fit in a 64-bit bitboard.");
+        }
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.stride = rowCount + 1;
+        long bottom = 0;
+        for (int col = 0; col < columnCount; col++) {
+            bottom |= 1L << (col * stride);
+        }
+        this.bottom = bottom;
+        this.heights = new int[columnCount];
+        this.moveStack = new int[columnCount * rowCount];
+        this.redToMove = true;
+    }
+
+    /**
+     * Creates a copy of another bitboard, so a search on another thread can play on it independently.
+     *
+     * @param board the bitboard to copy
+     */
+    public Connect4BitBoard(Connect4BitBoard board) {
+        this.columnCount = board.columnCount;
+        this.rowCount = board.rowCount;
+        this.stride = board.stride;
+        this.bottom = board.bottom;
+        this.current = board.current;
+        this.mask = board.mask;
+        this.redToMove = board.redToMove;
+        this.hash = board.hash;
+        this.heights = board.heights.clone();
+        this.moveStack = board.moveStack.clone();
+        this.stackSize = board.stackSize;
+        this.tokenCount = board.tokenCount;
+    }
+
+    /**
+     * Copies the tokens of a game onto this bitboard, replacing whatever was here before.
+     *
+     * @param game the game to copy; it must have the same size as this bitboard
+     * @param redToMove whether red is the next player to move
+     */
+    public void load(Connect4Game game, boolean redToMove) {
+        long red = 0, occupied = 0;
+        long hash = redToMove ? Zobrist.RED_TO_MOVE : 0;
+        for (int col = 0; col < columnCount; col++) {
+            Connect4Column column = game.getColumn(col);
+            int height = 0;
+            for (int row = rowCount - 1; row >= 0; row--) {
+                Connect4Slot slot = column.getSlot(row);
+                if (!slot.getIsFilled()) break;
+
+                long bit = 1L << (col * stride + height);
+                occupied |= bit;
+                if (slot.getIsRed()) red |= bit;
+                hash ^= Zobrist.key(slot.getIsRed(), col, height);
+                height++;
+            }
+            heights[col] = height;
+        }
+
+        this.mask = occupied;
+        this.current = redToMove ? red : occupied ^ red;
+        this.redToMove = redToMove;
+        this.hash = hash;
+        this.tokenCount = Long.bitCount(occupied);
+        this.stackSize = 0;
+    }
+
+    /**
+     * Checks if a token can be dropped into a column.
+     *
+     * @param col the column to check
+     * @return true if the column has an empty slot, false otherwise
+     */
+    public boolean canPlay(int col) {
+        return heights[col] < rowCount;
+    }
+
+    /**
+     * Drops a token for the player to move into a column. The column must not be full.
+     *
+     * @param col the column to play in
+     */
+    public void play(int col) {
+        long bit = 1L << (col * stride + heights[col]);
+        hash ^= Zobrist.key(redToMove, col, heights[col]) ^ Zobrist.RED_TO_MOVE;
+        current ^= mask; // the opponent's tokens become the tokens of the player to move
+        mask |= bit;
+        heights[col]++;
+        moveStack[stackSize++] = col;
+        tokenCount++;
+        redToMove = !redToMove;
+    }
+
+    /**
+     * Takes back the most recent play().
+     */
+    public void undo() {
+        int col = moveStack[--stackSize];
+        heights[col]--;
+        long bit = 1L << (col * stride + heights[col]);
+        mask ^= bit;
+        current ^= mask;
+        tokenCount--;
+        redToMove = !redToMove;
+        hash ^= Zobrist.key(redToMove, col, heights[col]) ^ Zobrist.RED_TO_MOVE;
+    }
+
+    /**
+     * Checks if the player who made the last move has four in a row. Only that player can have won,
+     * since the search never plays on from a won position.
+     *
+     * @return true if the player who is not to move has connected four, false otherwise
+     */
+    public boolean lastMoveWon() {
+        return hasFour(current ^ mask, stride);
+    }
+
+    /**
+     * Checks if every slot on the board is filled.
+     *
+     * @return true if the board is full, false otherwise
+     */
+    public boolean isFull() {
+        return tokenCount == columnCount * rowCount;
+    }
+
+    /**
+     * Returns a slot in the same form as Connect4Game.getBoardMatrix(), where row 0 is the top of the board.
+     *
+     * @param row the row of the slot, counted from the top
+     * @param col the column of the slot
+     * @return 'R' for a red token, 'Y' for a yellow token and 'B' for an empty slot
+     */
+    public char getCell(int row, int col) {
+        long bit = getCellMask(row, col);
+        if ((mask & bit) == 0) return 'B';
+        return ((current & bit) != 0) == redToMove ? 'R' : 'Y';
+    }
+
+    /**
+     * Returns the bit of a slot, using the same coordinates as Connect4Game.getBoardMatrix().
+     *
+     * @param row the row of the slot, counted from the top
+     * @param col the column of the slot
+     * @return a mask with only that slot's bit set
+     */
+    public long getCellMask(int row, int col) {
+        return 1L << (col * stride + rowCount - 1 - row);
+    }
+
+    /**
+     * Returns every token of one color.
+     *
+     * @param red true for the red tokens, false for the yellow tokens
+     * @return a mask of the slots holding that color
+     */
+    public long getTokens(boolean red) {
+        return red == redToMove ? current : current ^ mask;
+    }
+
+    /**
+     * Returns the number of tokens in a column.
+     *
+     * @param col the column to check
+     * @return how many slots of the column are filled
+     */
+    public int getHeight(int col) {
+        return heights[col];
+    }
+
+    /**
+     * Returns the slots a token can be dropped into right now: the lowest empty slot of every column that isn't full.
+     *
+     * @return a mask of the playable slots
+     */
+    public long getPlayableCells() {
+        return (mask + bottom) & boardMask();
+    }
+
+    /**
+     * Returns every empty slot that would give a player four in a row if they had a token there, whether or not a
+     * token can be dropped there yet. And-ed with getPlayableCells() these are the columns that win right now.
+     *
+     * @param red true for red's winning slots, false for yellow's
+     * @return a mask of the winning slots
+     */
+    public long getWinningCells(boolean red) {
+        return winningCells(getTokens(red), stride) & (boardMask() ^ mask);
+    }
+
+    /**
+     * @param cell a mask with one slot's bit set
+     * @return the column of that slot
+     */
+    public int getColumn(long cell) {
+        return Long.numberOfTrailingZeros(cell) / stride;
+    }
+
+    /**
+     * @return every slot on the board, without the sentinel bits
+     */
+    private long boardMask() {
+        return bottom * ((1L << rowCount) - 1);
+    }
+
+    /**
+     * @return the Zobrist hash of the position, including the player to move
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns a key that tells positions apart exactly. Each column's tokens of the player to move are added to its
+     * occupied cells plus one, which leaves a 1 just above the top token and the colors of the tokens below it. The
+     * key doesn't say which color is to move, only which tokens are theirs.
+     *
+     * @return the key of the position from the point of view of the player to move
+     */
+    public long getPositionKey() {
+        return current + mask + bottom;
+    }
+
+    /**
+     * Reflects a position key left to right, so column 0 becomes the last column.
+     *
+     * @param key a key from getPositionKey()
+     * @return the key of the mirror image of that position
+     */
+    public long mirrorKey(long key) {
+        long columnBits = (1L << stride) - 1;
+        long mirrored = 0;
+        for (int col = 0; col < columnCount; col++) {
+            mirrored |= ((key >>> (col * stride)) & columnBits) << ((columnCount - 1 - col) * stride);
+        }
+        return mirrored;
+    }
+
+    /**
+     * @return true if red is the next player to move, false if yellow is
+     */
+    public boolean isRedToMove() {
+        return redToMove;
+    }
+
+    /**
+     * @return the number of tokens on the board
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return the number of columns on the board
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return the number of rows on the board
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Checks whether a board size fits in one long. Larger boards need a MultiWordBitBoard.
+     *
+     * @param columnCount the number of columns on the board
+     * @param rowCount the number of rows on the board
+     * @return true if every column and its sentinel bit fit in 64 bits
+     */
+    public static boolean fits(int columnCount, int rowCount) {
+        return columnCount * (rowCount + 1) <= 64;
+    }
+
+    /**
+     * Orders the columns of a board from the center outwards, alternating left and right, since the central columns
+     * are in the most lines. On 7 columns this is 3, 2, 4, 1, 5, 0, 6.
+     *
+     * @param columnCount the number of columns on the board
+     * @return every column, center first
+     */
+    public static int[] centerOutOrder(int columnCount) {
+        int[] order = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            order[i] = columnCount / 2 + (1 - 2 * (i % 2)) * (i + 1) / 2;
+        }
+        return order;
+    }
+
+    /**
+     * Checks a set of tokens for four in a row. Shifting the tokens by one step in a direction and
+     * and-ing them with themselves leaves the cells that start a pair; doing it again with twice the
+     * step leaves the cells that start a line of four.
+     *
+     * @param tokens the tokens of one player
+     * @param stride the number of bits per column
+     * @return true if the tokens contain four in a row in any direction
+     */
+    static boolean hasFour(long tokens, int stride) {
+        long m = tokens & (tokens >>> 1); // vertical
+        if ((m & (m >>> 2)) != 0) return true;
+        m = tokens & (tokens >>> stride); // horizontal
+        if ((m & (m >>> (2 * stride))) != 0) return true;
+        m = tokens & (tokens >>> (stride - 1)); // diagonal going down to the right
+        if ((m & (m >>> (2 * (stride - 1)))) != 0) return true;
+        m = tokens & (tokens >>> (stride + 1)); // diagonal going up to the right
+        return (m & (m >>> (2 * (stride + 1)))) != 0;
+    }
+
+    /**
+     * Finds the cells that complete a line of four with three of a player's tokens, in the same way as hasFour(): for
+     * each direction, the cell is either beyond the end of three tokens in a row or in the gap of a broken line. The
+     * result can include occupied cells and sentinel bits, which the caller masks off.
+     *
+     * @param tokens the tokens of one player
+     * @param stride the number of bits per column
+     * @return the cells that would give the player four in a row
+     */
+    static long winningCells(long tokens, int stride) {
+        return WinningMoves.cells(tokens, stride, WinningMoves.ALL);
+    }
+}
@@ -5,6 +5,12 @@
 public class Connect4Column
 {
     private Connect4Slot[] slots;
+    private Connect4Game game; // the game holding this column, if any
+    private int index;
+    private int filledCount; // the number of filled slots
+    private int height; // the number of filled slots stacked without a gap from the bottom of the column
+    private long filledMask; // bit i is set while slot i is filled, in columns of at most 64 slots
+    private long redMask; // bit i is set while slot i holds a red token, in columns of at most 64 slots
 
     /**
      * Creates a new Connect4Column with a given height.
@@ -18,6 +24,7 @@ public class Connect4Column
         for (int i = 0; i < height; i++)
         {
             slots[i] = new Connect4Slot();
+            slots[i].attach(this, i);
         }
     }
     /**
@@ -32,6 +39,79 @@ public class Connect4Column
         for (int i = 0; i < column.getRowCount(); i++)
         {
             slots[i] = new Connect4Slot(column.getSlot(i));
+            slots[i].attach(this, i);
+        }
+        this.filledCount = column.filledCount;
+        this.height = column.height;
+        this.filledMask = column.filledMask;
+        this.redMask = column.redMask;
+    }
+    /**
+     * Ties the column to the game holding it, so the game hears about every token added or cleared.
+     *
+     *
+     * @param game the game holding this column.
+     * @param index the index of this column in the game.
+     */
+    void attach(Connect4Game game, int index)
+    {
+        this.game = game;
+        this.index = index;
+    }
+    /**
+     * Called by a slot of this column when a token is added to it.
+     *
+     *
+     * @param row the row of the slot.
+     * @param red whether the token is red.
+     */
+    void slotFilled(int row, boolean red)
+    {
+        filledCount++;
+        if (row < 64)
+        {
+            filledMask |= 1L << row;
+            if (red)
+            {
+                redMask |= 1L << row;
+            }
+        }
+        if (row == slots.length - 1 - height)
+        {
+            height++;
+            // a token dropped onto a gap can join tokens that were floating above it
+            while (height < slots.length && slots[slots.length - 1 - height].getIsFilled())
+            {
+                height++;
+            }
+        }
+        if (game != null)
+        {
+            game.tokenPlaced(index, row, red);
+        }
+    }
+    /**
+     * Called by a slot of this column when its token is cleared.
+     *
+     *
+     * @param row the row of the slot.
+     * @param red whether the token was red.
+     */
+    void slotCleared(int row, boolean red)
+    {
+        filledCount--;
+        if (row < 64)
+        {
+            filledMask &= ~(1L << row);
+            redMask &= ~(1L << row);
+        }
+        if (row >= slots.length - height)
+        {
+            height = slots.length - 1 - row;
+        }
+        if (game != null)
+        {
+            game.tokenCleared(index, row, red);
         }
     }
     /**
@@ -60,14 +140,63 @@ public class Connect4Column
      */
     public boolean getIsFull()
     {
-        for (Connect4Slot slot : slots)
+        return filledCount == slots.length;
+    }
+    /**
+     * Returns the index of the slot a dropped token would land in, which is the highest-numbered
+     * empty slot since row 0 is the top of the column.
+     *
+     *
+     * @return the index of the top empty slot, or -1 if the column is full.
+     */
+    public int getTopEmptyIndex()
+    {
+        if (height == slots.length)
         {
-            if (!slot.getIsFilled())
-            {
-                return false;
-            }
+            return -1;
         }
-        return true;
+        return slots.length - 1 - height;
+    }
+    /**
+     * Returns the number of tokens stacked from the bottom of the column without a gap.
+     *
+     *
+     * @return the height of the column.
+     */
+    public int getHeight()
+    {
+        return height;
+    }
+    /**
+     * Returns the number of filled slots, including any above a gap.
+     *
+     *
+     * @return the number of filled slots.
+     */
+    int getFilledCount()
+    {
+        return filledCount;
+    }
+    /**
+     * Returns the filled slots as a bit mask, with bit i set if slot i is filled. Only the first
+     * 64 slots fit, so this is only complete for columns of at most 64 rows.
+     *
+     *
+     * @return the mask of filled slots.
+     */
+    long getFilledMask()
+    {
+        return filledMask;
+    }
+    /**
+     * Returns the slots holding red tokens as a bit mask, in the same way as getFilledMask().
+     *
+     *
+     * @return the mask of red slots.
+     */
+    long getRedMask()
+    {
+        return redMask;
     }
     /**
      * Returns the number of rows in the column.
@@ -16,6 +16,7 @@ public class Connect4Frame extends JFrame
     JButton newGameButton, nextMoveButton, playToEndButton;   // the buttons controlling the game
     JLabel updateLabel; // the status label describing the events of the game
     Random r;   // a random number generator to randomly decide who plays first
+    BoardSnapshot oldBoard;  // the board before each move, for validation
 
     /**
      * Creates a new Connect4Frame with a given game and pair of players.
@@ -34,6 +35,7 @@ public class Connect4Frame extends JFrame
         this.yellowPlayer = yellowPlayer; //stores the yellow player
         gameActive = false;   // initially sets that no game is active
         r = new Random();   // creates the random number generator
+        oldBoard = new BoardSnapshot(game);  // creates the record of the board before each move
 
         myPanel = new Connect4Panel(game);  // creates the panel for displaying the game
 
@@ -107,7 +109,7 @@ public class Connect4Frame extends JFrame
      *
      */
     private void nextMove() {
-        Connect4Game oldBoard = new Connect4Game(myGame);   // store the old board for validation
+        oldBoard.take(myGame);   // store the old board for validation
         if(redPlayerturn) // if it's the red player's turn, run their move
         {
             redPlayer.move();
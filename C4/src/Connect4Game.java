@@ -4,11 +4,43 @@
  * Connect4Game is made of a certain number of Connect4Columns. Each column represents
  * a column from the current state of the game.
  *
+ * A game can have up to 64 columns, one bit each in the legal move mask, and any number of
+ * rows. Boards of more than 32 columns or rows have no Zobrist keys, so their getHash() leaves
+ * out the tokens and only tells whose turn it is.
+ *
  */
 public class Connect4Game
 {
     private Connect4Column[] columns;
     private boolean redPlayedFirst;
+    private int winLength; // the number of tokens in a row that wins
+
+    // gameWon() is answered from the last placed token whenever possible. The winner is KNOWN for the
+    // current board, PENDING when it is known for the board before the token at (lastColumn, lastRow)
+    // was placed, or UNKNOWN after edits such as clearing a slot, which need a full scan.
+    private static final int WINNER_KNOWN = 0;
+    private static final int WINNER_PENDING = 1;
+    private static final int WINNER_UNKNOWN = 2;
+    private static final int[][] DIRECTIONS = {{1, 0}, {0, 1}, {1, 1}, {1, -1}}; // {column step, row step} of each line
+    private char winner;
+    private int winnerState;
+    private int lastColumn, lastRow;
+
+    private long legalMoves; // bit i is set while column i has an empty slot
+
+    // play() and undo() work on a stack of the columns played. Tokens added or cleared through the
+    // slots are pushed and popped too, as long as each lands on or leaves the top of its column in
+    // turn; any other edit leaves the stack unusable until the next clearBoard().
+    private int[] moveStack;
+    private char[] winnerBefore; // the winner before each move on the stack, or '?' if it wasn't known
+    private int stackSize;
+    private boolean stackValid;
+    private int tokenCount;
+    private long hash; // the xor of the Zobrist keys of every token on the board
+    private boolean hashed; // whether the board is small enough for Zobrist keys
+    private long filledBits; // every token on the board, packed as in a Connect4BitBoard
+    private long redBits; // the red tokens on the board, packed the same way
+    private boolean packed; // whether the board fits in the packed layout
 
     /**
      * Construct a new Connect 4 game with the given size.
@@ -19,11 +51,42 @@ public class Connect4Game
      */
     public Connect4Game(int numCols, int numRows)
     {
+        this(numCols, numRows, 4);
+    }
+    /**
+     * Construct a new game with the given size where a different number of tokens in a row wins,
+     * such as connect 5 on a 10x10 board.
+     *
+     *
+     * @param numCols The number of columns in the game board
+     * @param numRows The number of rows in the game board
+     * @param winLength The number of tokens in a row that wins the game
+     */
+    public Connect4Game(int numCols, int numRows, int winLength)
+    {
+        if (numCols > 64)
+        {
+            throw new IllegalArgumentException("A game can have at most 64 columns.");
+        }
+        if (winLength < 2)
+        {
+            throw new IllegalArgumentException("It takes at least two tokens in a row to win.");
+        }
+        this.winLength = winLength;
         columns=new Connect4Column[numCols];
         for(int i = 0; i < numCols; i++)
         {
             columns[i] = new Connect4Column(numRows);
+            columns[i].attach(this, i);
         }
+        legalMoves = numRows > 0 && numCols > 0 ? -1L >>> (64 - numCols) : 0;
+        winner = 'N';
+        winnerState = WINNER_KNOWN;
+        moveStack = new int[numCols * numRows];
+        winnerBefore = new char[numCols * numRows];
+        stackValid = true;
+        hashed = numCols <= Zobrist.MAX_COLUMNS && numRows <= Zobrist.MAX_ROWS;
+        packed = numCols * (numRows + 1) <= 64;
     }
     /**
      * Copy an existing Connect 4 game.
@@ -37,7 +100,25 @@ public class Connect4Game
         for (int i = 0; i < game.getColumnCount(); i++)
         {
             columns[i] = new Connect4Column(game.getColumn(i));
+            columns[i].attach(this, i);
         }
+        winner = game.winner;
+        winnerState = game.winnerState;
+        lastColumn = game.lastColumn;
+        lastRow = game.lastRow;
+        legalMoves = game.legalMoves;
+        winLength = game.winLength;
+        redPlayedFirst = game.redPlayedFirst;
+        moveStack = game.moveStack.clone();
+        winnerBefore = game.winnerBefore.clone();
+        stackSize = game.stackSize;
+        stackValid = game.stackValid;
+        tokenCount = game.tokenCount;
+        hash = game.hash;
+        hashed = game.hashed;
+        filledBits = game.filledBits;
+        redBits = game.redBits;
+        packed = game.packed;
     }
 
     /**
@@ -79,6 +160,16 @@ public class Connect4Game
     {
         return columns[0].getRowCount();
     }
+    /**
+     * Get the number of tokens in a row that wins the game.
+     *
+     *
+     * @return the win length, 4 unless the game was created with another.
+     */
+    public int getWinLength()
+    {
+        return winLength;
+    }
     /**
      * Start a new game.
      *
@@ -92,6 +183,140 @@ public class Connect4Game
                 getColumn(i).getSlot(j).clear();
             }
         }
+        winner = 'N';
+        winnerState = WINNER_KNOWN;
+        stackSize = 0;
+        stackValid = true;
+    }
+    /**
+     * Drop a token for the player to move into a column.
+     *
+     *
+     * @param col the column to drop into.
+     * @throws IllegalArgumentException if there is no such column or it is full.
+     */
+    public void play(int col)
+    {
+        if (getColumn(col) == null || getColumn(col).getIsFull())
+        {
+            throw new IllegalArgumentException("Column " + col + " is not a legal move.");
+        }
+        Connect4Slot slot = getColumn(col).getSlot(dropRow(col));
+        if (sideToMove() == 'R')
+        {
+            slot.addRed();
+        }
+        else
+        {
+            slot.addYellow();
+        }
+    }
+    /**
+     * Take back the last move, whether it was made with play() or by filling the top slot of a
+     * column directly. The winner and highlighted slots go back to what they were before it.
+     *
+     *
+     * @throws IllegalStateException if no move was made since the board was cleared, or a slot
+     * was edited out of turn since then.
+     */
+    public void undo()
+    {
+        if (!stackValid)
+        {
+            throw new IllegalStateException("The board was edited out of turn, so its moves can't be undone.");
+        }
+        if (stackSize == 0)
+        {
+            throw new IllegalStateException("There is no move to undo.");
+        }
+        int col = moveStack[stackSize - 1];
+        getColumn(col).getSlot(getRowCount() - getColumn(col).getHeight()).clear();
+    }
+    /**
+     * Get the player whose turn it is, from who played first and the number of tokens on the board.
+     *
+     *
+     * @return 'R' if red is to move, 'Y' if yellow is.
+     */
+    public char sideToMove()
+    {
+        return (tokenCount % 2 == 0) == redPlayedFirst ? 'R' : 'Y';
+    }
+    /**
+     * Get the number of tokens on the board.
+     *
+     *
+     * @return the number of moves made since the board was cleared.
+     */
+    public int moveCount()
+    {
+        return tokenCount;
+    }
+    /**
+     * Get the column of the last move.
+     *
+     *
+     * @return the column the last move was played in, or -1 if there is none or the board was
+     * edited out of turn.
+     */
+    public int getLastMove()
+    {
+        return stackValid && stackSize > 0 ? moveStack[stackSize - 1] : -1;
+    }
+    /**
+     * Get the number of tokens stacked in a column.
+     *
+     *
+     * @param col the column.
+     * @return the number of filled slots from the bottom of the column up to its first gap.
+     */
+    public int getHeight(int col)
+    {
+        return getColumn(col).getHeight();
+    }
+    /**
+     * Get the Zobrist hash of the position, which is the same as the hash of a Connect4BitBoard
+     * loaded from this game with the same player to move.
+     *
+     *
+     * @return the hash of the tokens on the board and the player to move.
+     */
+    public long getHash()
+    {
+        return sideToMove() == 'R' ? hash ^ Zobrist.RED_TO_MOVE : hash;
+    }
+    /**
+     * Check whether the board is small enough for getTokenBits() and getFilledBits(), which needs a bit for every
+     * slot plus one more on top of each column.
+     *
+     *
+     * @return true if the tokens are kept packed.
+     */
+    public boolean isPacked()
+    {
+        return packed;
+    }
+    /**
+     * Get one player's tokens packed into a long in the layout of a Connect4BitBoard: column-major,
+     * with rows counted from the bottom and a spare bit on top of each column.
+     *
+     *
+     * @param red whether to get the red tokens or the yellow ones.
+     * @return the player's tokens, or 0 if the board is not packed.
+     */
+    public long getTokenBits(boolean red)
+    {
+        return red ? redBits : filledBits ^ redBits;
+    }
+    /**
+     * Get every token on the board, packed in the same layout as getTokenBits().
+     *
+     *
+     * @return the filled slots, or 0 if the board is not packed.
+     */
+    public long getFilledBits()
+    {
+        return filledBits;
     }
     /**
      * Retrieve a matrix form of the board.
@@ -133,26 +358,266 @@ public class Connect4Game
      */
     public boolean boardFull()
     {
-        char[][] board = getBoardMatrix();
-        for (int i = 0; i < getColumnCount(); i++)
+        return legalMoves == 0;
+    }
+    /**
+     * Get the columns that a token can currently be dropped into.
+     *
+     *
+     * @return a mask where bit i is set if column i is not full.
+     */
+    public long getLegalMoveMask()
+    {
+        return legalMoves;
+    }
+    /**
+     * Get the number of columns that a token can currently be dropped into.
+     *
+     *
+     * @return the number of columns that are not full.
+     */
+    public int getLegalMoveCount()
+    {
+        return Long.bitCount(legalMoves);
+    }
+    /**
+     * Get one of the columns that a token can currently be dropped into, counting from the left.
+     * Passing a random number below getLegalMoveCount() picks a uniformly random legal move.
+     *
+     *
+     * @param n which legal column to return, from 0 to getLegalMoveCount() - 1.
+     * @return the index of the nth column that is not full.
+     */
+    public int getLegalMove(int n)
+    {
+        long moves = legalMoves;
+        for (int i = 0; i < n; i++)
+        {
+            moves &= moves - 1;
+        }
+        return Long.numberOfTrailingZeros(moves);
+    }
+    /**
+     * Get the row a token dropped into a column would land in.
+     *
+     *
+     * @param col the column to drop into.
+     * @return the row of the top empty slot in that column, or -1 if the column is full.
+     */
+    public int dropRow(int col)
+    {
+        return getColumn(col).getTopEmptyIndex();
+    }
+    /**
+     * Check if the game has been won.
+     *
+     *
+     * @return 'R' if red won, 'Y' if yellow won, 'N' if the game has not been won.
+     */
+    public char gameWon()
+    {
+        if (winnerState == WINNER_PENDING)
+        {
+            resolveLastMove();
+        }
+        else if (winnerState == WINNER_UNKNOWN)
+        {
+            winner = scanForWinner();
+            winnerState = WINNER_KNOWN;
+        }
+        return winner;
+    }
+    /**
+     * Called by a column of this game when a token is added to one of its slots.
+     *
+     *
+     * @param column the column of the token.
+     * @param row the row of the token.
+     * @param red whether the token is red.
+     */
+    void tokenPlaced(int column, int row, boolean red)
+    {
+        if (getColumn(column).getIsFull())
+        {
+            legalMoves &= ~(1L << column);
+        }
+        tokenCount++;
+        if (hashed)
+        {
+            hash ^= Zobrist.key(red, column, getRowCount() - 1 - row);
+        }
+        if (packed)
+        {
+            long bit = 1L << (column * (getRowCount() + 1) + getRowCount() - 1 - row);
+            filledBits |= bit;
+            if (red)
+            {
+                redBits |= bit;
+            }
+        }
+        boolean resolvedWithToken = false;
+        if (winnerState == WINNER_PENDING)
+        {
+            // the new token is already in its slot, so a win found now may only exist because of it
+            resolveLastMove();
+            resolvedWithToken = winner != 'N';
+        }
+        if (stackValid && isTopToken(column, row))
+        {
+            moveStack[stackSize] = column;
+            winnerBefore[stackSize] = winnerState == WINNER_KNOWN && !resolvedWithToken ? winner : '?';
+            stackSize++;
+        }
+        else
+        {
+            stackValid = false;
+        }
+        if (winnerState == WINNER_KNOWN && winner == 'N')
+        {
+            // nobody had a winning line, so only a line through the new token can win
+            winnerState = WINNER_PENDING;
+            lastColumn = column;
+            lastRow = row;
+        }
+        else
+        {
+            winnerState = WINNER_UNKNOWN;
+        }
+    }
+    /**
+     * Called by a column of this game when a token is cleared from one of its slots.
+     *
+     *
+     * @param column the column of the token.
+     * @param row the row of the token.
+     * @param red whether the token was red.
+     */
+    void tokenCleared(int column, int row, boolean red)
+    {
+        legalMoves |= 1L << column;
+        tokenCount--;
+        if (hashed)
+        {
+            hash ^= Zobrist.key(red, column, getRowCount() - 1 - row);
+        }
+        if (packed)
+        {
+            long bit = 1L << (column * (getRowCount() + 1) + getRowCount() - 1 - row);
+            filledBits &= ~bit;
+            redBits &= ~bit;
+        }
+        if (stackValid && stackSize > 0 && moveStack[stackSize - 1] == column && isTopToken(column, row + 1))
+        {
+            // the last move was taken back, so the board is the one from before it
+            stackSize--;
+            char before = winnerBefore[stackSize];
+            if (before == 'N' && winnerState == WINNER_KNOWN && winner != 'N')
+            {
+                clearHighlights();
+            }
+            if (before == '?')
+            {
+                // any highlights may be from the board with the move on it; the next scan puts back the right ones
+                clearHighlights();
+                winnerState = WINNER_UNKNOWN;
+            }
+            else
+            {
+                winner = before;
+                winnerState = WINNER_KNOWN;
+            }
+        }
+        else
+        {
+            stackValid = false;
+            winnerState = WINNER_UNKNOWN;
+        }
+    }
+    /**
+     * Check whether a row is the top of a column with no gaps below it.
+     *
+     *
+     * @param column the column.
+     * @param row the row of the top token, or the bottom row plus one for an empty column.
+     * @return true if every slot from the bottom of the column up to the row is filled and nothing
+     * above it is.
+     */
+    private boolean isTopToken(int column, int row)
+    {
+        Connect4Column c = getColumn(column);
+        return c.getHeight() == c.getFilledCount() && row == getRowCount() - c.getHeight();
+    }
+    /**
+     * Remove the highlight from every slot, after the winning move is taken back.
+     *
+     */
+    private void clearHighlights()
+    {
+        for (Connect4Column column : columns)
         {
             for (int j = 0; j < getRowCount(); j++)
             {
-                if (board[j][i] == 'B')
+                column.getSlot(j).unhighlight();
+            }
+        }
+    }
+    /**
+     * Decide whether the last placed token completed a winning line, checking only the four lines
+     * through it, and highlight the winning slots if it did.
+     *
+     */
+    private void resolveLastMove()
+    {
+        winner = 'N';
+        for (int[] direction : DIRECTIONS)
+        {
+            int start = lineStart(lastColumn, lastRow, direction[0], direction[1]);
+            int length = 1 + start + lineStart(lastColumn, lastRow, -direction[0], -direction[1]);
+            if (length >= winLength)
+            {
+                for (int k = 0; k < winLength; k++)
                 {
-                    return false;
+                    highlightSlot(lastRow - (start - k) * direction[1], lastColumn - (start - k) * direction[0]);
                 }
+                winner = getColumn(lastColumn).getSlot(lastRow).getIsRed() ? 'R' : 'Y';
+                break;
             }
         }
-        return true;
+        winnerState = WINNER_KNOWN;
     }
     /**
-     * Check if the game has been won.
+     * Count how many tokens of the same color as the given token lie next to it, stepping
+     * backwards along a direction.
+     *
+     *
+     * @param column the column of the token.
+     * @param row the row of the token.
+     * @param dc the column step of the direction.
+     * @param dr the row step of the direction.
+     * @return the number of matching tokens before the end of the run.
+     */
+    private int lineStart(int column, int row, int dc, int dr)
+    {
+        boolean red = getColumn(column).getSlot(row).getIsRed();
+        int count = 0;
+        int c = column - dc, r = row - dr;
+        while (c >= 0 && c < getColumnCount() && r >= 0 && r < getRowCount()
+                && getColumn(c).getSlot(r).getIsFilled() && getColumn(c).getSlot(r).getIsRed() == red)
+        {
+            count++;
+            c -= dc;
+            r -= dr;
+        }
+        return count;
+    }
+    /**
+     * Find a winner by scanning every slot of the board. This is the fallback for boards whose
+     * slots were edited other than by placing one token at a time.
      *
      *
      * @return 'R' if red won, 'Y' if yellow won, 'N' if the game has not been won.
      */
-    public char gameWon()
+    private char scanForWinner()
     {
         char[][] board = getBoardMatrix();
 
@@ -162,49 +627,11 @@ public class Connect4Game
             {
                 if(board[j][i] != 'B')
                 {
-                    if (j + 3 < getRowCount())
+                    // down the column, along the row, and down each diagonal
+                    if (scanLine(board, j, i, 1, 0) || scanLine(board, j, i, 0, 1)
+                            || scanLine(board, j, i, 1, 1) || scanLine(board, j, i, 1, -1))
                     {
-                        if(board[j][i] == board[j + 1][i] && board[j][i] == board[j + 2][i] && board[j][i] == board[j + 3][i])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i);
-                            highlightSlot(j + 2, i);
-                            highlightSlot(j + 3, i);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount())
-                    {
-                        if (board[j][i] == board[j][i + 1] && board[j][i] == board[j][i + 2] && board[j][i] == board[j][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j, i + 1);
-                            highlightSlot(j, i + 2);
-                            highlightSlot(j, i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i + 3 < getColumnCount() && j + 3 < getRowCount())
-                    {
-                        if(board[j][i] == board[j + 1][i + 1] && board[j][i] == board[j + 2][i + 2] && board[j][i] == board[j + 3][i + 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i + 1);
-                            highlightSlot(j + 2, i + 2);
-                            highlightSlot(j + 3,i + 3);
-                            return board[j][i];
-                        }
-                    }
-                    if (i > 2 && j + 3 < getRowCount())
-                    {
-                        if (board[j][i] == board[j + 1][i - 1] && board[j][i] == board[j + 2][i - 2] && board[j][i] == board[j + 3][i - 3])
-                        {
-                            highlightSlot(j, i);
-                            highlightSlot(j + 1, i - 1);
-                            highlightSlot(j + 2, i - 2);
-                            highlightSlot(j + 3, i - 3);
-                            return board[j][i];
-                        }
+                        return board[j][i];
                     }
                 }
             }
@@ -212,6 +639,38 @@ public class Connect4Game
 
         return 'N';
     }
+    /**
+     * Check whether a line of winLength slots starting at a filled slot all hold the same color,
+     * and highlight them if they do.
+     *
+     *
+     * @param board the board matrix.
+     * @param row the row of the first slot.
+     * @param column the column of the first slot.
+     * @param dr the row step between slots.
+     * @param dc the column step between slots.
+     * @return true if the line is on the board and all one color.
+     */
+    private boolean scanLine(char[][] board, int row, int column, int dr, int dc)
+    {
+        int lastRow = row + (winLength - 1) * dr, lastColumn = column + (winLength - 1) * dc;
+        if (lastRow >= getRowCount() || lastColumn < 0 || lastColumn >= getColumnCount())
+        {
+            return false;
+        }
+        for (int k = 1; k < winLength; k++)
+        {
+            if (board[row + k * dr][column + k * dc] != board[row][column])
+            {
+                return false;
+            }
+        }
+        for (int k = 0; k < winLength; k++)
+        {
+            highlightSlot(row + k * dr, column + k * dc);
+        }
+        return true;
+    }
     /**
      * Validate that the given board is a valid next state following this board.
      *
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Plays games between two agents without a window. This follows the same rules as Connect4Frame:
+ * a coin flip decides who plays first, every move is validated against the board before it, and
+ * the game ends on a win, a full board or the first invalid move. Nothing here touches AWT or
+ * Swing, so it can run on a headless machine.
+ */
+public class Connect4Match {
+    // results returned by play(), alongside 'R' and 'Y' from Connect4Game.gameWon()
+    public static final char TIE = 'T';
+    public static final char INVALID = 'I';
+
+    private final Connect4Game myGame;
+    private final Agent redPlayer, yellowPlayer;
+    private final Random r; // decides who plays first
+    private String invalidMove = "";
+    private GameRecordWriter recorder; // records every game played, if set
+    private long seed; // the seed of the game being played, or 0 if it wasn't seeded
+    private final int[] moves; // the columns played in the game so far, for the recorder
+    private int moveCount;
+    private final BoardSnapshot oldBoard; // the board before each move, for validation
+
+    /**
+     * Creates a match between two agents that were both given this game.
+     *
+     * @param game         the game the agents play on.
+     * @param redPlayer    the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     */
+    public Connect4Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer) {
+        this(game, redPlayer, yellowPlayer, new Random());
+    }
+
+    /**
+     * Creates a match between two agents that were both given this game.
+     *
+     * @param game         the game the agents play on.
+     * @param redPlayer    the agent playing as the red tokens.
+     * @param yellowPlayer the agent playing as the yellow tokens.
+     * @param r            the random number generator deciding who plays first.
+     */
+    public Connect4Match(Connect4Game game, Agent redPlayer, Agent yellowPlayer, Random r) {
+        this.myGame = game;
+        this.redPlayer = redPlayer;
+        this.yellowPlayer = yellowPlayer;
+        this.r = r;
+        this.moves = new int[game.getColumnCount() * game.getRowCount()];
+        this.oldBoard = new BoardSnapshot(game);
+    }
+
+    /**
+     * Records every game this match plays from now on.
+     *
+     * @param recorder the writer to record the games with, or null to stop recording
+     */
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Clears the board and plays one game to the end.
+     *
+     * @return 'R' if red won, 'Y' if yellow won, TIE if the board filled up, or INVALID if an agent made
+     * an invalid move.
+     */
+    public char play() {
+        seed = 0;
+        return playGame();
+    }
+
+    /**
+     * Plays one game from a cleared board and records it, if there is a recorder.
+     *
+     * @return the result, as play() returns it
+     */
+    private char playGame() {
+        myGame.clearBoard();
+        invalidMove = "";
+        moveCount = 0;
+        boolean redPlayedFirst = r.nextBoolean();
+        myGame.setRedPlayedFirst(redPlayedFirst);
+        char result = playMoves(redPlayedFirst);
+        if (recorder != null) {
+            try {
+                recorder.write(redPlayer.getName(), yellowPlayer.getName(), redPlayedFirst, seed, result, moves,
+                        moveCount);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Couldn't record the game", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lets the agents take turns until the game ends.
+     *
+     * @param redPlayerTurn whether red moves first
+     * @return the result, as play() returns it
+     */
+    private char playMoves(boolean redPlayerTurn) {
+        while (true) {
+            oldBoard.take(myGame); // store the old board for validation
+            if (redPlayerTurn) {
+                redPlayer.move();
+            } else {
+                yellowPlayer.move();
+            }
+
+            String validateResult = oldBoard.validate(myGame);
+            if (validateResult.length() > 0) {
+                invalidMove = validateResult;
+                return INVALID;
+            }
+            moves[moveCount++] = lastMove();
+            redPlayerTurn = !redPlayerTurn;
+
+            char won = myGame.gameWon();
+            if (won != 'N') {
+                return won;
+            }
+            if (myGame.boardFull()) {
+                return TIE;
+            }
+        }
+    }
+
+    /**
+     * Clears the board and plays one game to the end, first reseeding the coin flip and both agents
+     * from the given seed. Playing the same seed with the same agents replays the same game.
+     *
+     * @param seed the seed for this game.
+     * @return 'R' if red won, 'Y' if yellow won, TIE if the board filled up, or INVALID if an agent made
+     * an invalid move.
+     */
+    public char play(long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        r.setSeed(seeds.nextLong());
+        redPlayer.reseed(seeds.nextLong());
+        yellowPlayer.reseed(seeds.nextLong());
+        this.seed = seed;
+        return playGame();
+    }
+
+    /**
+     * Finds the column of the move just made, which validate() has already checked was a single token.
+     *
+     * @return the column the token was dropped in
+     */
+    private int lastMove() {
+        int col = myGame.getLastMove();
+        if (col >= 0) return col;
+        // the move stack was lost, which happens if an agent changed the board some other way on its turn
+        col = oldBoard.changedColumn(myGame);
+        if (col < 0) throw new IllegalStateException("No token was played");
+        return col;
+    }
+
+    /**
+     * Returns the validation message for the game that play() last ended as INVALID.
+     *
+     * @return the reason the last move was invalid, or an empty string if the last game ended normally.
+     */
+    public String getInvalidMove() {
+        return invalidMove;
+    }
+}
@@ -8,6 +8,8 @@ public class Connect4Slot
     private boolean isFilled;
     private boolean isRed;
     private boolean isHighlighted;
+    private Connect4Column column; // the column holding this slot, if any; told whenever the slot changes
+    private int row;
 
     /**
      * Creates a new Connect4Slot, initially unfilled.
@@ -30,6 +32,19 @@ public class Connect4Slot
         this.isFilled = slot.getIsFilled();
         this.isRed = slot.getIsRed();
     }
+    /**
+     * Ties the slot to the column holding it, so the column and its game can keep their
+     * derived state up to date when a token is added or cleared.
+     *
+     *
+     * @param column the column holding this slot.
+     * @param row the index of this slot in the column.
+     */
+    void attach(Connect4Column column, int row)
+    {
+        this.column = column;
+        this.row = row;
+    }
     /**
      * Checks if the slot is currently filled.
      *
@@ -63,6 +78,10 @@ public class Connect4Slot
         {
             this.isFilled = true;
             this.isRed = true;
+            if (column != null)
+            {
+                column.slotFilled(row, true);
+            }
         }
     }
     /**
@@ -75,6 +94,10 @@ public class Connect4Slot
         {
             this.isFilled = true;
             this.isRed = false;
+            if (column != null)
+            {
+                column.slotFilled(row, false);
+            }
         }
     }
 
@@ -95,14 +118,28 @@ public class Connect4Slot
     {
         this.isHighlighted = true;
     }
+    /**
+     * Removes the highlight, when the winning move it was part of is taken back.
+     *
+     */
+    void unhighlight()
+    {
+        this.isHighlighted = false;
+    }
     /**
      * Clears the slot.
      * 
      */
     public void clear()
     {
+        boolean wasFilled = isFilled;
+        boolean wasRed = isRed;
         this.isFilled = false;
         this.isRed = false;
         this.isHighlighted = false;
+        if (wasFilled && column != null)
+        {
+            column.slotCleared(row, wasRed);
+        }
     }
 }
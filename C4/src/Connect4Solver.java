@@ -0,0 +1,288 @@
+/**
+ * Solves Connect 4 positions exactly, for MyAgent to use once the board is nearly full.
+ *
+ * The solver is a negamax alpha-beta search that only ever asks yes/no questions: each search has a
+ * window one point wide ("is the score above s?"), and solve() narrows down the true score with a
+ * few of them. A score says who wins and how soon. If the player to move wins with their k-th token,
+ * the score is the number of tokens they have left unplayed after it; a loss is the same, negated;
+ * a draw is 0. Searches keep an upper bound on every position they finish in their own cache, so
+ * later searches of the same endgame start from it.
+ *
+ * Positions are two longs in the layout of Connect4BitBoard, copied from one when a solve starts.
+ */
+public class Connect4Solver {
+    private static final int CACHE_SIZE = 524287; // a prime, so keys spread over the whole cache
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int stride;
+    private final int cells;
+    private final long bottom; // the bottom slot of every column
+    private final long boardMask; // every slot on the board
+    private final int[] columnOrder; // the center columns first, since they are in the most lines of four
+    private final int[] lineShifts; // the bit distance between neighbouring cells of a horizontal or diagonal line
+
+    private long current; // tokens of the player to move
+    private long mask; // every occupied cell
+    private int moves;
+
+    private final long[] cacheKeys = new long[CACHE_SIZE];
+    private final byte[] cacheValues = new byte[CACHE_SIZE]; // upper bound - minimum score + 1, or 0 if empty
+    private final long[][] sortedMoves; // the moves to try at each number of tokens, best first
+    private final int[][] moveScores; // the number of threats each of the sorted moves makes
+    private long nodeCount;
+
+    /**
+     * Creates a solver for a board size.
+     *
+     * @param columnCount the number of columns on the board
+     * @param rowCount    the number of rows on the board
+     */
+    public Connect4Solver(int columnCount, int rowCount) {
+        if (!Connect4BitBoard.fits(columnCount, rowCount)) {
+            throw new IllegalArgumentException("A " + columnCount + "x" + rowCount + " board does not fit in a 64-bit bitboard.");
+        }
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.stride = rowCount + 1;
+        this.cells = columnCount * rowCount;
+
+        long bottom = 0;
+        for (int col = 0; col < columnCount; col++) {
+            bottom |= 1L << (col * stride);
+        }
+        this.bottom = bottom;
+        this.boardMask = bottom * ((1L << rowCount) - 1);
+
+        columnOrder = Connect4BitBoard.centerOutOrder(columnCount);
+        lineShifts = new int[]{stride, stride - 1, stride + 1};
+        sortedMoves = new long[cells + 1][columnCount];
+        moveScores = new int[cells + 1][columnCount];
+    }
+
+    /**
+     * Finds the best column for the player to move: the quickest win, or else a draw, or else the slowest loss. Ties
+     * go to the column nearest the center.
+     *
+     * @param board the position, which must not be won already or full
+     * @return the best column
+     */
+    public int bestColumn(Connect4BitBoard board) {
+        load(board);
+        for (int col : columnOrder) {
+            if (canPlay(col) && isWinningMove(col)) return col;
+        }
+
+        int bestColumn = -1;
+        int bestScore = Integer.MIN_VALUE;
+        long position = current, occupied = mask;
+        for (int col : columnOrder) {
+            if (!canPlay(col)) continue;
+
+            play(columnBit(col) & (mask + bottom));
+            int score = -solvePosition();
+            current = position;
+            mask = occupied;
+            moves--;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestColumn = col;
+            }
+        }
+        return bestColumn;
+    }
+
+    /**
+     * Solves a position.
+     *
+     * @param board the position, which must not be won already
+     * @return the score of the position for the player to move
+     */
+    public int solve(Connect4BitBoard board) {
+        load(board);
+        return solvePosition();
+    }
+
+    /**
+     * @return the number of positions searched since the solver was created
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    private void load(Connect4BitBoard board) {
+        if (board.getColumnCount() != columnCount || board.getRowCount() != rowCount) {
+            throw new IllegalArgumentException("The board is not " + columnCount + "x" + rowCount + ".");
+        }
+        current = board.getTokens(board.isRedToMove());
+        mask = current | board.getTokens(!board.isRedToMove());
+        moves = board.getTokenCount();
+    }
+
+    /**
+     * Narrows down the score of the loaded position with null-window searches, halving the range each time. The
+     * window starts at 0 and works outwards, since finding out who wins takes fewer nodes than finding out how soon.
+     */
+    private int solvePosition() {
+        if (canWinNext()) return (cells + 1 - moves) / 2;
+
+        int min = -(cells - moves) / 2;
+        int max = (cells + 1 - moves) / 2;
+        while (min < max) {
+            int med = min + (max - min) / 2;
+            if (med <= 0 && min / 2 < med) med = min / 2;
+            else if (med >= 0 && max / 2 > med) med = max / 2;
+
+            int score = negamax(med, med + 1);
+            if (score <= med) max = score;
+            else min = score;
+        }
+        return min;
+    }
+
+    /**
+     * Searches the loaded position, which the player to move can't win on this move.
+     *
+     * @param alpha the score the player to move has already been offered elsewhere
+     * @param beta  the score the opponent has already been offered elsewhere
+     * @return the exact score if it is between alpha and beta; otherwise an upper bound at most alpha or a lower bound
+     * at least beta
+     */
+    private int negamax(int alpha, int beta) {
+        nodeCount++;
+
+        long next = possibleNonLosingMoves();
+        if (next == 0) return -(cells - moves) / 2; // every move lets the opponent win next
+        if (moves >= cells - 2) return 0; // neither player can win with the last two tokens
+
+        int min = -(cells - 2 - moves) / 2; // the opponent can't win before their next move
+        if (alpha < min) {
+            alpha = min;
+            if (alpha >= beta) return alpha;
+        }
+
+        int max = (cells - 1 - moves) / 2; // this player can't win on this move
+        long key = current + mask + bottom;
+        int index = (int) Long.remainderUnsigned(key, CACHE_SIZE);
+        if (cacheKeys[index] == key && cacheValues[index] != 0) {
+            max = cacheValues[index] + minScore() - 1;
+        }
+        if (beta > max) {
+            beta = max;
+            if (alpha >= beta) return beta;
+        }
+
+        // try the moves that make the most new threats first, then the central ones
+        long[] order = sortedMoves[moves];
+        int[] scores = moveScores[moves];
+        int n = 0;
+        for (int col : columnOrder) {
+            long move = next & columnBit(col);
+            if (move == 0) continue;
+
+            int score = Long.bitCount(winningCells(current | move, mask | move));
+            int i = n++;
+            while (i > 0 && scores[i - 1] < score) {
+                order[i] = order[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            order[i] = move;
+            scores[i] = score;
+        }
+
+        long position = current, occupied = mask;
+        for (int i = 0; i < n; i++) {
+            play(order[i]);
+            int score = -negamax(-beta, -alpha);
+            current = position;
+            mask = occupied;
+            moves--;
+
+            if (score >= beta) return score;
+            if (score > alpha) alpha = score;
+        }
+
+        cacheKeys[index] = key;
+        cacheValues[index] = (byte) (alpha - minScore() + 1);
+        return alpha;
+    }
+
+    private int minScore() {
+        return -cells / 2 + 3;
+    }
+
+    private void play(long move) {
+        current ^= mask;
+        mask |= move;
+        moves++;
+    }
+
+    private boolean canPlay(int col) {
+        return (mask & topBit(col)) == 0;
+    }
+
+    private boolean isWinningMove(int col) {
+        return (winningCells(current, mask) & (mask + bottom) & columnBit(col)) != 0;
+    }
+
+    private boolean canWinNext() {
+        return (winningCells(current, mask) & possibleMoves()) != 0;
+    }
+
+    /**
+     * @return the cells a token can be dropped into right now
+     */
+    private long possibleMoves() {
+        return (mask + bottom) & boardMask;
+    }
+
+    /**
+     * Finds the moves that don't hand the opponent a win on their next move. When the opponent threatens to win in
+     * one column the move has to go there, and when they threaten two there is no such move. A move is also losing
+     * when it lets the opponent win in the cell on top of it.
+     *
+     * @return the cells of the moves that don't lose straight away
+     */
+    private long possibleNonLosingMoves() {
+        long possible = possibleMoves();
+        long opponentWins = winningCells(current ^ mask, mask);
+        long forced = possible & opponentWins;
+        if (forced != 0) {
+            if ((forced & (forced - 1)) != 0) return 0; // two threats can't both be blocked
+            possible = forced;
+        }
+        return possible & ~(opponentWins >>> 1);
+    }
+
+    /**
+     * Finds the empty cells that would complete four in a row for a player.
+     *
+     * @param tokens   the tokens of the player
+     * @param occupied every occupied cell
+     * @return the empty cells on the board that win for the player
+     */
+    private long winningCells(long tokens, long occupied) {
+        // vertical
+        long r = (tokens << 1) & (tokens << 2) & (tokens << 3);
+
+        for (int shift : lineShifts) { // horizontal and both diagonals
+            long p = (tokens << shift) & (tokens << (2 * shift));
+            r |= p & (tokens << (3 * shift));
+            r |= p & (tokens >>> shift);
+            p = (tokens >>> shift) & (tokens >>> (2 * shift));
+            r |= p & (tokens << shift);
+            r |= p & (tokens >>> (3 * shift));
+        }
+        return r & (boardMask ^ occupied);
+    }
+
+    private long topBit(int col) {
+        return 1L << (col * stride + rowCount - 1);
+    }
+
+    private long columnBit(int col) {
+        return ((1L << rowCount) - 1) << (col * stride);
+    }
+}
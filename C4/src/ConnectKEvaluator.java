@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Scores a MultiWordBitBoard the way LineEvaluator scores a Connect4BitBoard, for any win length: a line of winLength
+ * cells that only one player has tokens in is worth THREE to that player if it is one token short of a win and TWO if
+ * it is two short. With four in a row this is exactly LineEvaluator's score.
+ *
+ * A full count over every line would have to look at each word of each line mask at every leaf, so instead the
+ * number of red and yellow tokens in every line is kept up to date as the search plays and takes back tokens. A
+ * token only changes the lines through its own cell, at most winLength of them in each direction.
+ */
+public class ConnectKEvaluator {
+    private final int winLength;
+    private final int[][] cellLines; // the lines through each bit of the board
+    private final int[] lineValues; // the score for red of a line with r red and y yellow tokens, at r * (winLength + 1) + y
+    private final int[] lineStates; // r * (winLength + 1) + y for each line
+    private int score; // for red
+
+    /**
+     * Creates an evaluator for a board size and win length.
+     *
+     * @param board a board of the size and win length to evaluate
+     */
+    public ConnectKEvaluator(MultiWordBitBoard board) {
+        this.winLength = board.getWinLength();
+        long[][] lines = board.lineMasks();
+        int[] linesThroughCell = new int[board.getBitCount()];
+        for (long[] line : lines) {
+            for (int bit = 0; bit < linesThroughCell.length; bit++) {
+                if ((line[bit >>> 6] >>> bit & 1) != 0) linesThroughCell[bit]++;
+            }
+        }
+        cellLines = new int[board.getBitCount()][];
+        for (int bit = 0; bit < cellLines.length; bit++) {
+            cellLines[bit] = new int[linesThroughCell[bit]];
+            linesThroughCell[bit] = 0;
+        }
+        for (int l = 0; l < lines.length; l++) {
+            for (int bit = 0; bit < cellLines.length; bit++) {
+                if ((lines[l][bit >>> 6] >>> bit & 1) != 0) cellLines[bit][linesThroughCell[bit]++] = l;
+            }
+        }
+
+        int counts = winLength + 1;
+        lineValues = new int[counts * counts];
+        for (int tokens = 1; tokens < winLength; tokens++) {
+            int value = tokens == winLength - 1 ? LineEvaluator.THREE : tokens == winLength - 2 ? LineEvaluator.TWO : 0;
+            lineValues[tokens * counts] = value;
+            lineValues[tokens] = -value;
+        }
+        lineStates = new int[lines.length];
+    }
+
+    /**
+     * Scores a board from scratch. After this, played() and undoing() keep the score up to date.
+     *
+     * @param board the board to score
+     */
+    public void reset(MultiWordBitBoard board) {
+        Arrays.fill(lineStates, 0);
+        score = 0;
+        long[] red = board.getTokens(true);
+        long[] yellow = board.getTokens(false);
+        for (int bit = 0; bit < cellLines.length; bit++) {
+            int step = (red[bit >>> 6] >>> bit & 1) != 0 ? winLength + 1 : (yellow[bit >>> 6] >>> bit & 1) != 0 ? 1 : 0;
+            if (step == 0) continue;
+            for (int l : cellLines[bit]) {
+                lineStates[l] += step;
+            }
+        }
+        for (int state : lineStates) {
+            score += lineValues[state];
+        }
+    }
+
+    /**
+     * Adds a token to the score. Call this after board.play(col).
+     *
+     * @param board the board the token was played on
+     * @param col   the column it was played in
+     */
+    public void played(MultiWordBitBoard board, int col) {
+        int step = board.isRedToMove() ? 1 : winLength + 1; // the player who just moved isn't the one to move
+        for (int l : cellLines[board.getTopBit(col)]) {
+            score -= lineValues[lineStates[l]];
+            lineStates[l] += step;
+            score += lineValues[lineStates[l]];
+        }
+    }
+
+    /**
+     * Takes a token back out of the score. Call this before board.undo(), so the token is still on the board.
+     *
+     * @param board the board the token is about to be taken back on
+     * @param col   the column it is in
+     */
+    public void undoing(MultiWordBitBoard board, int col) {
+        int step = board.isRedToMove() ? 1 : winLength + 1;
+        for (int l : cellLines[board.getTopBit(col)]) {
+            score -= lineValues[lineStates[l]];
+            lineStates[l] -= step;
+            score += lineValues[lineStates[l]];
+        }
+    }
+
+    /**
+     * @param red true for red's point of view, false for yellow's
+     * @return the heuristic score of the board for that player
+     */
+    public int getScore(boolean red) {
+        return red ? score : -score;
+    }
+}
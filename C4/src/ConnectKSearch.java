@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * MyAgent's search for games Connect4BitBoard can't hold: boards too big for one long and games won by some other
+ * number of tokens in a row than four, such as connect 4 on 9x8 or connect 5 on 10x10. It is a negamax alpha-beta
+ * search with iterative deepening on a MultiWordBitBoard, scored by a ConnectKEvaluator, with a transposition table
+ * and a killer column per ply. Columns are otherwise tried from the center outwards, for any width.
+ *
+ * Scores are from the point of view of the player to move, on the same scale as MyAgent's: a win is worth more than
+ * WIN_THRESHOLD, and a quicker win more than a slower one.
+ */
+public class ConnectKSearch {
+    private static final int WIN = 100000;
+    private static final int WIN_THRESHOLD = 90000; // scores beyond this are wins or losses, never heuristic
+    private static final int INFINITY = Integer.MAX_VALUE; // negates without overflowing, unlike MIN_VALUE
+    private static final int TRANSPOSITION_TABLE_BITS = 18; // 2^18 buckets of two entries, 8 MB
+
+    private final MultiWordBitBoard board;
+    private final ConnectKEvaluator evaluator;
+    private final TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_BITS);
+    private final int[] columnOrder; // the center columns first
+    private final int[][] moveOrders; // the order to try columns in, for each number of tokens on the board
+    private final int[] killers; // the last column that caused a cutoff, for each number of tokens on the board
+
+    private int rootDepth;
+    private int rootColumn; // the best column of the root, set by negamax
+    private long deadline; // System.nanoTime() at which the current iteration is abandoned; 0 for no deadline
+    private boolean searchAborted;
+    private long nodeCount;
+    private int lastTokenCount; // tokens on the board at the last search, to notice when a new game starts
+
+    /**
+     * Creates a search for a board size and win length.
+     *
+     * @param columnCount the number of columns on the board
+     * @param rowCount the number of rows on the board
+     * @param winLength the number of tokens in a row that wins
+     */
+    public ConnectKSearch(int columnCount, int rowCount, int winLength) {
+        board = new MultiWordBitBoard(columnCount, rowCount, winLength);
+        evaluator = new ConnectKEvaluator(board);
+        columnOrder = Connect4BitBoard.centerOutOrder(columnCount);
+        moveOrders = new int[columnCount * rowCount + 1][columnCount];
+        killers = new int[columnCount * rowCount + 1];
+    }
+
+    /**
+     * Searches a game deeper and deeper until the depth limit or the time budget is reached.
+     *
+     * @param game the game to search, which must not be won or full
+     * @param redToMove whether red is the player to move
+     * @param maxDepth the deepest iteration to search
+     * @param moveTimeMillis the time budget in milliseconds, or 0 to always search to maxDepth
+     * @return the best column of the deepest iteration that finished
+     */
+    public int bestColumn(Connect4Game game, boolean redToMove, int maxDepth, long moveTimeMillis) {
+        board.load(game, redToMove);
+        evaluator.reset(board);
+        Arrays.fill(killers, -1);
+        if (board.getTokenCount() < lastTokenCount) {
+            transpositionTable.clear(); // a new game
+        }
+        lastTokenCount = board.getTokenCount();
+        transpositionTable.newSearch();
+
+        int emptySlots = board.getColumnCount() * board.getRowCount() - board.getTokenCount();
+        maxDepth = moveTimeMillis > 0 ? emptySlots : Math.min(maxDepth, emptySlots);
+        long start = System.nanoTime();
+        deadline = moveTimeMillis > 0 ? start + moveTimeMillis * 1_000_000 : 0;
+        searchAborted = false;
+
+        int bestColumn = -1;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            rootDepth = depth;
+            int score = negamax(depth, -INFINITY, INFINITY);
+            if (searchAborted) break; // keep the last search that finished
+
+            bestColumn = rootColumn;
+            if (Math.abs(score) > WIN_THRESHOLD) break; // a forced win or loss will not change with a deeper search
+            if (moveTimeMillis > 0 && System.nanoTime() - start > moveTimeMillis * 1_000_000 / 2) break;
+        }
+        return bestColumn;
+    }
+
+    /**
+     * @return the number of positions searched since the search was created
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Searches the board.
+     *
+     * @param depth how many moves further to look
+     * @param alpha the score the player to move has already been offered elsewhere
+     * @param beta the score the opponent has already been offered elsewhere
+     * @return the score for the player to move
+     */
+    private int negamax(int depth, int alpha, int beta) {
+        if (board.lastMoveWon()) return -(WIN + depth); // the opponent has just won
+        if (board.isFull()) return 0;
+        if (depth == 0) return evaluator.getScore(board.isRedToMove());
+
+        // depth 1 always finishes so there is a move to play; after that, look at the clock every 1024 nodes
+        if ((++nodeCount & 1023) == 0 && deadline != 0 && rootDepth > 1 && System.nanoTime() > deadline) {
+            searchAborted = true;
+        }
+        if (searchAborted) return 0;
+
+        long hash = board.getHash();
+        int tableMove = -1;
+        long entry = transpositionTable.probe(hash);
+        if (entry != TranspositionTable.MISS) {
+            tableMove = TranspositionTable.bestMove(entry);
+            if (depth < rootDepth && TranspositionTable.depth(entry) >= depth) {
+                int tableScore = fromTableScore(TranspositionTable.score(entry), depth);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) return tableScore;
+                if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, tableScore);
+                if (bound == TranspositionTable.UPPER) beta = Math.min(beta, tableScore);
+                if (alpha >= beta) return tableScore;
+            }
+        }
+        int originalAlpha = alpha;
+
+        int ply = board.getTokenCount();
+        int[] order = moveOrders[ply];
+        int n = 0;
+        if (tableMove >= 0 && board.canPlay(tableMove)) order[n++] = tableMove;
+        int killer = killers[ply];
+        if (killer >= 0 && killer != tableMove && board.canPlay(killer)) order[n++] = killer;
+        for (int col : columnOrder) {
+            if (col != tableMove && col != killer && board.canPlay(col)) order[n++] = col;
+        }
+
+        int bestScore = -INFINITY;
+        int bestColumn = -1;
+        for (int i = 0; i < n; i++) {
+            int col = order[i];
+            board.play(col);
+            evaluator.played(board, col);
+            int score = -negamax(depth - 1, -beta, -alpha);
+            evaluator.undoing(board, col);
+            board.undo();
+            if (searchAborted) return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestColumn = col;
+            }
+            if (score > alpha) alpha = score;
+            if (alpha >= beta) {
+                killers[ply] = col;
+                break;
+            }
+        }
+
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER
+                : bestScore >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        transpositionTable.store(hash, depth, bound, toTableScore(bestScore, depth), bestColumn);
+        if (depth == rootDepth) rootColumn = bestColumn;
+        return bestScore;
+    }
+
+    /**
+     * Win scores count how much depth was left when the win was found, which depends on where the search started.
+     * The table stores them relative to the position instead, as MyAgent's does.
+     */
+    private static int toTableScore(int score, int depth) {
+        if (score > WIN_THRESHOLD) return score - depth;
+        if (score < -WIN_THRESHOLD) return score + depth;
+        return score;
+    }
+
+    private static int fromTableScore(int score, int depth) {
+        if (score > WIN_THRESHOLD) return score + depth;
+        if (score < -WIN_THRESHOLD) return score - depth;
+        return score;
+    }
+}
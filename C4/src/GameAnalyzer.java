@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Goes back over the games in a GameRecordWriter file and judges every move: BEST if nothing scored better, BLUNDER
+ * if it threw away a win or walked into a loss (or lost at least BLUNDER_MARGIN by the heuristic), and otherwise an
+ * INACCURACY. The moves are counted by the agent that played them and by ply, so it shows who goes wrong and when,
+ * such as where MyAgent loses to BrilliantAgent, without watching the games.
+ *
+ * Positions are scored by MyAgent.scoreColumns() to a fixed depth, or solved exactly by Connect4Solver once at most
+ * --solve slots are empty.
+ *
+ * The reader (on the main thread) copies games out of the file into batches and hands them to the worker threads
+ * through a bounded queue; the workers give each batch back through a second queue once they are done with it. There
+ * are only ever twice as many batches as workers, so the reader waits when the workers fall behind and memory use
+ * doesn't grow with the file. Each worker has its own board, agents, solver and counts, which are added up at the end,
+ * so the workers share nothing but the queues.
+ *
+ * Usage: java GameAnalyzer FILE [--threads T] [--depth D] [--solve EMPTY] [--filter TEXT] [--limit GAMES]
+ */
+public class GameAnalyzer {
+    public static final int BEST = 0;
+    public static final int INACCURACY = 1;
+    public static final int BLUNDER = 2;
+    private static final String[] JUDGEMENTS = {"best", "inaccuracies", "blunders"};
+    public static final int BLUNDER_MARGIN = 2000; // about two open threes by MyAgent's heuristic
+    private static final int BATCH_GAMES = 256;
+
+    /**
+     * Games copied out of the record file, for a worker to analyze.
+     */
+    private static final class Batch {
+        final String[] redAgents = new String[BATCH_GAMES];
+        final String[] yellowAgents = new String[BATCH_GAMES];
+        final boolean[] redPlayedFirst = new boolean[BATCH_GAMES];
+        final int[] moveCounts = new int[BATCH_GAMES];
+        final byte[][] moves;
+        int size; // the number of games in the batch; -1 tells the worker there are no more
+
+        Batch(int cells) {
+            moves = new byte[BATCH_GAMES][cells];
+        }
+    }
+
+    /**
+     * The judgements of the moves analyzed, by agent and by ply.
+     */
+    public static final class Counts {
+        public final Map<String, long[]> byAgent = new LinkedHashMap<>(); // [BEST, INACCURACY, BLUNDER] for each agent
+        public final long[][] byPly;
+        public long games;
+        public long positions;
+        public long nodes; // positions searched by MyAgent and the solver
+
+        Counts(int cells) {
+            byPly = new long[cells][3];
+        }
+
+        void count(String agent, int ply, int judgement) {
+            byAgent.computeIfAbsent(agent, k -> new long[3])[judgement]++;
+            byPly[ply][judgement]++;
+            positions++;
+        }
+
+        void add(Counts other) {
+            for (Map.Entry<String, long[]> agent : other.byAgent.entrySet()) {
+                long[] counts = byAgent.computeIfAbsent(agent.getKey(), k -> new long[3]);
+                for (int i = 0; i < 3; i++) counts[i] += agent.getValue()[i];
+            }
+            for (int ply = 0; ply < byPly.length; ply++) {
+                for (int i = 0; i < 3; i++) byPly[ply][i] += other.byPly[ply][i];
+            }
+            games += other.games;
+            positions += other.positions;
+            nodes += other.nodes;
+        }
+    }
+
+    /**
+     * Analyzes the games of one batch after another, until it is given an empty one.
+     */
+    private static final class Worker implements Runnable {
+        private final BlockingQueue<Batch> full, empty;
+        private final Connect4Game game;
+        private final MyAgent[] agents; // [0] yellow, [1] red, each scoring its own moves
+        private final Connect4BitBoard board;
+        private final Connect4Solver solver;
+        private final int solveThreshold;
+        private final int[] scores;
+        final Counts counts;
+        RuntimeException failure; // what stopped this worker analyzing, if anything did
+
+        Worker(BlockingQueue<Batch> full, BlockingQueue<Batch> empty, int columns, int rows, int depth,
+               int solveThreshold) {
+            this.full = full;
+            this.empty = empty;
+            this.solveThreshold = solveThreshold;
+            game = new Connect4Game(columns, rows);
+            agents = new MyAgent[]{new MyAgent(game, false), new MyAgent(game, true)};
+            for (MyAgent agent : agents) agent.setSearchDepth(depth);
+            board = new Connect4BitBoard(columns, rows);
+            solver = new Connect4Solver(columns, rows);
+            scores = new int[columns];
+            counts = new Counts(columns * rows);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch batch = full.take();
+                    if (batch.size < 0) return;
+                    if (failure == null) {
+                        try {
+                            for (int i = 0; i < batch.size; i++) {
+                                analyze(batch, i);
+                            }
+                        } catch (RuntimeException e) {
+                            failure = e; // keep handing batches back, so the reader isn't left waiting for them
+                        }
+                    }
+                    empty.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Judges every move of one game.
+         */
+        private void analyze(Batch batch, int g) {
+            game.clearBoard();
+            game.setRedPlayedFirst(batch.redPlayedFirst[g]);
+            for (MyAgent agent : agents) agent.newGame();
+            counts.games++;
+
+            int cells = game.getColumnCount() * game.getRowCount();
+            for (int ply = 0; ply < batch.moveCounts[g]; ply++) {
+                int col = batch.moves[g][ply];
+                boolean redToMove = game.sideToMove() == 'R';
+                String agent = redToMove ? batch.redAgents[g] : batch.yellowAgents[g];
+                if (cells - ply <= solveThreshold) {
+                    counts.count(agent, ply, judgeSolved(redToMove, col));
+                } else {
+                    MyAgent scorer = agents[redToMove ? 1 : 0];
+                    scorer.scoreColumns(scores);
+                    counts.nodes += scorer.getLastMoveStatistics().nodes + scorer.getLastMoveStatistics().leaves;
+                    counts.count(agent, ply, judge(scores, col, MyAgent.WIN_THRESHOLD, BLUNDER_MARGIN));
+                }
+                game.play(col);
+            }
+        }
+
+        /**
+         * Judges a move by solving the position after every move the player could have made.
+         */
+        private int judgeSolved(boolean redToMove, int played) {
+            board.load(game, redToMove);
+            int cells = board.getColumnCount() * board.getRowCount();
+            long nodesBefore = solver.getNodeCount();
+            for (int col = 0; col < scores.length; col++) {
+                if (!board.canPlay(col)) {
+                    scores[col] = Integer.MIN_VALUE;
+                    continue;
+                }
+                board.play(col);
+                if (board.lastMoveWon()) {
+                    scores[col] = cells; // better than any win the solver could find later
+                } else if (board.isFull()) {
+                    scores[col] = 0;
+                } else {
+                    scores[col] = -solver.solve(board);
+                }
+                board.undo();
+            }
+            counts.nodes += solver.getNodeCount() - nodesBefore;
+            // any win beats any draw, and any draw beats any loss; there is no heuristic margin
+            return judge(scores, played, 0, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Judges a move by comparing its score with the best one.
+     *
+     * @param scores        the score of every column, Integer.MIN_VALUE for full ones
+     * @param played        the column played
+     * @param winThreshold  scores above this are wins, and below minus it are losses
+     * @param blunderMargin a move that loses this much or more is a blunder even if it doesn't change the result
+     * @return BEST, INACCURACY or BLUNDER
+     */
+    static int judge(int[] scores, int played, int winThreshold, int blunderMargin) {
+        int best = Integer.MIN_VALUE;
+        for (int score : scores) best = Math.max(best, score);
+        int score = scores[played];
+        if (score == best) return BEST;
+        if (outcome(score, winThreshold) < outcome(best, winThreshold)) return BLUNDER;
+        if ((long) best - score >= blunderMargin) return BLUNDER;
+        return INACCURACY;
+    }
+
+    /**
+     * @return 1 for a won score, -1 for a lost one, 0 otherwise
+     */
+    private static int outcome(int score, int winThreshold) {
+        return score > winThreshold ? 1 : score < -winThreshold ? -1 : 0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: java GameAnalyzer FILE [--threads T] [--depth D] [--solve EMPTY] "
+                    + "[--filter TEXT] [--limit GAMES]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = 6;
+        int solveThreshold = 14;
+        String filter = "";
+        long limit = Long.MAX_VALUE;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--depth")) depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--solve")) solveThreshold = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--filter")) filter = args[++i];
+            else if (args[i].equals("--limit")) limit = Long.parseLong(args[++i]);
+        }
+
+        long start = System.nanoTime();
+        Counts total;
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(args[0]))) {
+            int columns = reader.getColumnCount(), rows = reader.getRowCount();
+            if (!Connect4BitBoard.fits(columns, rows)) {
+                throw new IllegalArgumentException("Only boards that fit in a 64-bit bitboard can be analyzed.");
+            }
+
+            BlockingQueue<Batch> full = new ArrayBlockingQueue<>(threads * 2);
+            BlockingQueue<Batch> empty = new ArrayBlockingQueue<>(threads * 2);
+            for (int i = 0; i < threads * 2; i++) empty.add(new Batch(columns * rows));
+            List<Worker> workers = new ArrayList<>();
+            List<Thread> workerThreads = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                Worker worker = new Worker(full, empty, columns, rows, depth, solveThreshold);
+                Thread thread = new Thread(worker, "GameAnalyzer worker " + i);
+                workers.add(worker);
+                workerThreads.add(thread);
+                thread.start();
+            }
+
+            boolean handedOver = false; // whether every game and the stop batches reached the workers
+            try {
+                long read = 0;
+                Batch batch = empty.take();
+                batch.size = 0;
+                while (read < limit && reader.next()) {
+                    String pair = reader.getRedAgent() + " vs " + reader.getYellowAgent();
+                    if (!filter.isEmpty() && !pair.contains(filter)) continue;
+                    int g = batch.size++;
+                    batch.redAgents[g] = reader.getRedAgent();
+                    batch.yellowAgents[g] = reader.getYellowAgent();
+                    batch.redPlayedFirst[g] = reader.getRedPlayedFirst();
+                    batch.moveCounts[g] = reader.getMoveCount();
+                    for (int i = 0; i < reader.getMoveCount(); i++) {
+                        batch.moves[g][i] = (byte) reader.getMove(i);
+                    }
+                    read++;
+                    if (batch.size == BATCH_GAMES) {
+                        full.put(batch); // waits while every batch is queued up for the workers
+                        batch = empty.take();
+                        batch.size = 0;
+                    }
+                }
+                full.put(batch);
+                for (int i = 0; i < threads; i++) {
+                    Batch end = empty.take();
+                    end.size = -1;
+                    full.put(end);
+                }
+                handedOver = true;
+            } finally {
+                if (!handedOver) {
+                    // the file couldn't be read to the end, so stop the workers instead of leaving them waiting
+                    for (Thread thread : workerThreads) thread.interrupt();
+                    for (Thread thread : workerThreads) thread.join();
+                }
+            }
+
+            total = new Counts(columns * rows);
+            for (int i = 0; i < threads; i++) {
+                workerThreads.get(i).join();
+                if (workers.get(i).failure != null) throw workers.get(i).failure;
+                total.add(workers.get(i).counts);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("Analyzed %d games, %d positions in %.2f s on %d thread(s): %.1f positions per second, "
+                + "%d nodes%n", total.games, total.positions, seconds, threads, total.positions / seconds, total.nodes);
+        System.out.println();
+        System.out.printf("%-28s %10s %14s %14s %14s%n", "agent", "moves", JUDGEMENTS[0], JUDGEMENTS[1], JUDGEMENTS[2]);
+        for (Map.Entry<String, long[]> agent : total.byAgent.entrySet()) {
+            printRow(agent.getKey(), agent.getValue());
+        }
+        System.out.println();
+        System.out.printf("%-28s %10s %14s %14s %14s%n", "ply", "moves", JUDGEMENTS[0], JUDGEMENTS[1], JUDGEMENTS[2]);
+        for (int ply = 0; ply < total.byPly.length; ply++) {
+            if (total.byPly[ply][BEST] + total.byPly[ply][INACCURACY] + total.byPly[ply][BLUNDER] > 0) {
+                printRow(Integer.toString(ply + 1), total.byPly[ply]);
+            }
+        }
+    }
+
+    private static void printRow(String name, long[] counts) {
+        long moves = counts[BEST] + counts[INACCURACY] + counts[BLUNDER];
+        System.out.printf("%-28s %10d", name, moves);
+        for (long count : counts) {
+            System.out.printf(" %7d %5.1f%%", count, 100.0 * count / moves);
+        }
+        System.out.println();
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a file written by GameRecordWriter, one game at a time. The file is memory-mapped and each game is read in
+ * place: next() moves on to the next game, and the getters read it straight out of the mapping, so reading allocates
+ * nothing per game. The file is mapped a window at a time, so it can be larger than memory or than a single mapping.
+ *
+ * Usage: java GameRecordReader FILE, which prints how many games each pair of agents played and how they ended.
+ */
+public class GameRecordReader implements Closeable {
+    private static final long WINDOW_BYTES = 1L << 30; // the most of the file mapped at once
+
+    private final FileChannel channel;
+    private final long size;
+    private final int columnCount;
+    private final int rowCount;
+    private final int bitsPerMove;
+    private final int maxEntryBytes;
+    private final List<String> agents = new ArrayList<>(); // agent names by id
+
+    private MappedByteBuffer window;
+    private long windowStart; // the offset in the file of the window's first byte
+    private int position; // the offset in the window of the next entry
+
+    // the current game
+    private long gameOffset;
+    private int redAgent;
+    private int yellowAgent;
+    private int flags;
+    private long seed;
+    private int moveCount;
+    private int movesPosition; // the offset in the window of the packed moves
+
+    /**
+     * Opens a record file.
+     *
+     * @param file the file to read
+     * @throws IOException if the file can't be read or isn't a record file
+     */
+    public GameRecordReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            map(0);
+            if (size < GameRecordWriter.HEADER_BYTES || window.getInt(0) != GameRecordWriter.MAGIC) {
+                throw new IOException("Not a game record file.");
+            }
+            columnCount = window.getInt(4);
+            rowCount = window.getInt(8);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        bitsPerMove = GameRecordWriter.bitsPerMove(columnCount);
+        maxEntryBytes = Math.max(GameRecordWriter.AGENT_HEADER_BYTES + 0xFFFF,
+                GameRecordWriter.GAME_HEADER_BYTES + (columnCount * rowCount * bitsPerMove + 7) / 8);
+        position = GameRecordWriter.HEADER_BYTES;
+    }
+
+    /**
+     * Maps the window of the file that starts at an offset.
+     */
+    private void map(long offset) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_BYTES, size - offset));
+        windowStart = offset;
+        position = 0;
+    }
+
+    /**
+     * Moves on to the next game.
+     *
+     * @return false if there are no more games
+     * @throws IOException if the file is cut short or isn't a record file
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            long offset = windowStart + position;
+            if (offset >= size) return false;
+            // map the next window before an entry could run off the end of this one
+            if (window.limit() - position < maxEntryBytes && windowStart + window.limit() < size) {
+                map(offset);
+            }
+
+            byte kind = window.get(position);
+            if (kind == GameRecordWriter.AGENT) {
+                checkLength(offset, GameRecordWriter.AGENT_HEADER_BYTES);
+                int id = window.get(position + 1) & 0xFF;
+                int length = window.getShort(position + 2) & 0xFFFF;
+                checkLength(offset, GameRecordWriter.AGENT_HEADER_BYTES + length);
+                byte[] name = new byte[length];
+                window.get(position + GameRecordWriter.AGENT_HEADER_BYTES, name);
+                while (agents.size() <= id) agents.add(null);
+                agents.set(id, new String(name, StandardCharsets.UTF_8));
+                position += GameRecordWriter.AGENT_HEADER_BYTES + length;
+            } else if (kind == GameRecordWriter.GAME) {
+                checkLength(offset, GameRecordWriter.GAME_HEADER_BYTES);
+                redAgent = window.get(position + 1) & 0xFF;
+                yellowAgent = window.get(position + 2) & 0xFF;
+                flags = window.get(position + 3);
+                seed = window.getLong(position + 4);
+                moveCount = window.getShort(position + 12) & 0xFFFF;
+                int entryBytes = GameRecordWriter.GAME_HEADER_BYTES + (moveCount * bitsPerMove + 7) / 8;
+                checkLength(offset, entryBytes);
+                gameOffset = offset;
+                movesPosition = position + GameRecordWriter.GAME_HEADER_BYTES;
+                position += entryBytes;
+                return true;
+            } else {
+                throw new IOException("Not a game record at byte " + offset);
+            }
+        }
+    }
+
+    private void checkLength(long offset, int entryBytes) throws IOException {
+        if (offset + entryBytes > size) throw new IOException("The file is cut short at byte " + offset);
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the offset in the file of the current game
+     */
+    public long getGameOffset() {
+        return gameOffset;
+    }
+
+    public String getRedAgent() {
+        return agents.get(redAgent);
+    }
+
+    public String getYellowAgent() {
+        return agents.get(yellowAgent);
+    }
+
+    public boolean getRedPlayedFirst() {
+        return (flags & 1) != 0;
+    }
+
+    /**
+     * @return the seed the game was played with, or 0 if it wasn't seeded
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return 'R', 'Y', Connect4Match.TIE or Connect4Match.INVALID
+     */
+    public char getResult() {
+        return GameRecordWriter.RESULTS.charAt(flags >>> 1 & 3);
+    }
+
+    /**
+     * @return the number of valid moves in the game
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @param i the number of the move, from 0
+     * @return the column it was played in
+     */
+    public int getMove(int i) {
+        int bit = i * bitsPerMove;
+        int index = movesPosition + (bit >>> 3);
+        int bits = window.get(index) & 0xFF;
+        if ((bit & 7) + bitsPerMove > 8) bits |= (window.get(index + 1) & 0xFF) << 8;
+        return bits >>> (bit & 7) & (1 << bitsPerMove) - 1;
+    }
+
+    /**
+     * Plays the first moves of the current game onto a game board, after clearing it.
+     *
+     * @param game  the board to play on, the same size as the recorded games
+     * @param moves the number of moves to play
+     */
+    public void replay(Connect4Game game, int moves) {
+        game.clearBoard();
+        game.setRedPlayedFirst(getRedPlayedFirst());
+        for (int i = 0; i < moves; i++) {
+            game.play(getMove(i));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java GameRecordReader FILE");
+            return;
+        }
+
+        Map<String, int[]> results = new LinkedHashMap<>(); // red, yellow, tie and invalid counts by pair of agents
+        long games = 0, moves = 0;
+        try (GameRecordReader reader = new GameRecordReader(Paths.get(args[0]))) {
+            while (reader.next()) {
+                String pair = reader.getRedAgent() + " (Red) vs " + reader.getYellowAgent() + " (Yellow)";
+                results.computeIfAbsent(pair, k -> new int[4])[GameRecordWriter.RESULTS.indexOf(reader.getResult())]++;
+                games++;
+                moves += reader.getMoveCount();
+            }
+            System.out.printf("%d games of %dx%d, %d moves, %.1f bytes per game%n", games, reader.getColumnCount(),
+                    reader.getRowCount(), moves, games == 0 ? 0 : (double) reader.size / games);
+        }
+        for (Map.Entry<String, int[]> pair : results.entrySet()) {
+            int[] counts = pair.getValue();
+            System.out.printf("%s: %d red wins, %d yellow wins, %d ties, %d invalid%n", pair.getKey(), counts[0],
+                    counts[1], counts[2], counts[3]);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes the games of a tournament to a file as they finish, so they can be analyzed afterwards. GameRecordReader
+ * reads them back.
+ *
+ * The file is a 12-byte header (magic number, column count, row count), then a stream of entries. An agent entry
+ * (AGENT, agent id, name length as a short, UTF-8 name) names an agent the first time one of its games is written. A
+ * game entry (GAME, red agent id, yellow agent id, flags, seed as a long, move count as a short) is followed by the
+ * columns played, packed bitsPerMove() bits each, lowest bits first: 3 bits on a 7-column board. The flags hold
+ * whether red played first in bit 0 and the result in bits 1 and 2. A 7x6 game takes about 24 bytes, so a million
+ * games fit in a few tens of megabytes.
+ *
+ * Entries are packed into a buffer that is written out when it fills up, and nothing is allocated per game except
+ * the first time an agent is seen. write() is synchronized, so one writer can be shared by the threads of a
+ * tournament.
+ */
+public class GameRecordWriter implements Closeable {
+    public static final int MAGIC = 0x43344752; // "C4GR"
+    static final int HEADER_BYTES = 12;
+    static final byte AGENT = 0;
+    static final byte GAME = 1;
+    static final int AGENT_HEADER_BYTES = 4; // kind, id, name length
+    static final int GAME_HEADER_BYTES = 14; // kind, red id, yellow id, flags, seed, move count
+    static final String RESULTS = "RY" + Connect4Match.TIE + Connect4Match.INVALID; // results by their code
+    private static final int BUFFER_BYTES = 1 << 17; // room for the longest agent entry
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final int columnCount;
+    private final int rowCount;
+    private final int bitsPerMove;
+    private final Map<String, Integer> agentIds = new HashMap<>();
+    private long gameCount;
+
+    /**
+     * Creates a record file, replacing any file already there.
+     *
+     * @param file        the file to write
+     * @param columnCount the number of columns on the board the games are played on
+     * @param rowCount    the number of rows on the board
+     * @throws IOException if the file can't be created
+     */
+    public GameRecordWriter(Path file, int columnCount, int rowCount) throws IOException {
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.bitsPerMove = bitsPerMove(columnCount);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.putInt(MAGIC).putInt(columnCount).putInt(rowCount);
+    }
+
+    /**
+     * @param columnCount the number of columns on the board
+     * @return the number of bits a column number is packed into
+     */
+    static int bitsPerMove(int columnCount) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(columnCount - 1));
+    }
+
+    /**
+     * Appends a finished game.
+     *
+     * @param redAgent       the name of the red player
+     * @param yellowAgent    the name of the yellow player
+     * @param redPlayedFirst whether red made the first move
+     * @param seed           the seed the game was played with, or 0 if it wasn't seeded
+     * @param result         'R', 'Y', Connect4Match.TIE or Connect4Match.INVALID
+     * @param moves          the columns played, in order; an invalid last move isn't one of them
+     * @param moveCount      the number of moves in the array
+     * @throws IOException if the buffer had to be written out and couldn't be
+     */
+    public synchronized void write(String redAgent, String yellowAgent, boolean redPlayedFirst, long seed, char result,
+                                   int[] moves, int moveCount) throws IOException {
+        int resultCode = RESULTS.indexOf(result);
+        if (resultCode < 0) throw new IllegalArgumentException("Unknown result " + result);
+        if (moveCount > columnCount * rowCount) {
+            throw new IllegalArgumentException(moveCount + " moves don't fit on the board");
+        }
+        for (int i = 0; i < moveCount; i++) { // before anything is written, so a bad game leaves no partial entry
+            if (moves[i] < 0 || moves[i] >= columnCount) {
+                throw new IllegalArgumentException("Column " + moves[i] + " isn't on the board");
+            }
+        }
+        int red = agentId(redAgent);
+        int yellow = agentId(yellowAgent);
+
+        ensureRoom(GAME_HEADER_BYTES + (moveCount * bitsPerMove + 7) / 8);
+        buffer.put(GAME).put((byte) red).put((byte) yellow).put((byte) ((redPlayedFirst ? 1 : 0) | resultCode << 1));
+        buffer.putLong(seed).putShort((short) moveCount);
+        int pending = 0; // bits packed but not yet put in the buffer
+        int pendingBits = 0;
+        for (int i = 0; i < moveCount; i++) {
+            pending |= moves[i] << pendingBits;
+            pendingBits += bitsPerMove;
+            while (pendingBits >= 8) {
+                buffer.put((byte) pending);
+                pending >>>= 8;
+                pendingBits -= 8;
+            }
+        }
+        if (pendingBits > 0) buffer.put((byte) pending);
+        gameCount++;
+    }
+
+    /**
+     * Finds an agent's id, writing an agent entry the first time the agent is seen.
+     */
+    private int agentId(String name) throws IOException {
+        Integer id = agentIds.get(name);
+        if (id != null) return id;
+
+        if (agentIds.size() > 255) throw new IllegalStateException("A record file holds at most 256 agents");
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("The agent name is too long");
+        id = agentIds.size();
+        ensureRoom(AGENT_HEADER_BYTES + bytes.length);
+        buffer.put(AGENT).put((byte) (int) id).putShort((short) bytes.length).put(bytes);
+        agentIds.put(name, id);
+        return id;
+    }
+
+    /**
+     * Writes the buffer out if an entry of this size wouldn't fit in what is left of it.
+     */
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    /**
+     * @return the number of games written so far
+     */
+    public synchronized long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Writes the buffered entries to the file.
+     *
+     * @throws IOException if they can't be written
+     */
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered entries and closes the file.
+     *
+     * @throws IOException if they can't be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
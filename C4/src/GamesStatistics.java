@@ -8,9 +8,15 @@ public class GamesStatistics {
     public int numTies;
     public int numInvalidMoves;
 
+    // wall-clock time spent playing the games, for tracking throughput
+    public long elapsedNanos;
+
     public Agent redPlayer;
     public Agent yellowPlayer;
 
+    // what MyAgent's search did in these games, or null if neither player is a MyAgent
+    public SearchStatistics searchStatistics;
+
     /**
      * Constructs a GamesStatistics object for these two agents
      * playing against each other.
@@ -21,6 +27,60 @@ public class GamesStatistics {
     }
 
 
+    /**
+     * Counts the result of one game.
+     *
+     * @param result the value returned by Connect4Match.play()
+     */
+    public void addResult(char result) {
+        numGames++;
+        if (result == 'R') {
+            numRedWins++;
+        } else if (result == 'Y') {
+            numYellowWins++;
+        } else if (result == Connect4Match.TIE) {
+            numTies++;
+        } else {
+            numInvalidMoves++;
+        }
+    }
+
+    /**
+     * Adds what a player's search did to these statistics, if the player is a MyAgent. Call this once
+     * the player has played all of its games here.
+     *
+     * @param player the red or yellow player
+     */
+    public void addSearchStatistics(Agent player) {
+        if (player instanceof MyAgent) {
+            SearchStatistics playerStatistics = ((MyAgent) player).getStatistics();
+            if (searchStatistics == null) {
+                searchStatistics = new SearchStatistics(playerStatistics.cutoffsByMove.length);
+            }
+            searchStatistics.add(playerStatistics);
+        }
+    }
+
+    /**
+     * Adds the counts of games played by another pair of the same agents, such as another
+     * worker's share of a parallel tournament.
+     *
+     * @param other the statistics to add to these
+     */
+    public void add(GamesStatistics other) {
+        numGames += other.numGames;
+        numRedWins += other.numRedWins;
+        numYellowWins += other.numYellowWins;
+        numTies += other.numTies;
+        numInvalidMoves += other.numInvalidMoves;
+        if (other.searchStatistics != null) {
+            if (searchStatistics == null) {
+                searchStatistics = new SearchStatistics(other.searchStatistics.cutoffsByMove.length);
+            }
+            searchStatistics.add(other.searchStatistics);
+        }
+    }
+
     /**
      * Prints out the statistics of the game.
      */
@@ -53,6 +113,19 @@ public class GamesStatistics {
         System.out.printf("# of invalid moves: %d (%.2f%%)\n",
                 this.numInvalidMoves,
                 this.percentTotal(this.numInvalidMoves));
+        System.out.printf("Games per second: %.1f\n", this.gamesPerSecond());
+        if (searchStatistics != null) {
+            searchStatistics.printStatistics();
+        }
+    }
+
+    /**
+     * Calculates how many games were played per second of wall-clock time.
+     *
+     * @return the number of games per second, or 0 if no time was recorded
+     */
+    public double gamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : numGames / (elapsedNanos / 1e9);
     }
 
     /**
@@ -1,10 +1,34 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class GraderRunner {
     // play the game many times and get win/lose/tie/invalid statistics from them
     public static final int NUM_GAMES = 1000;
 
+    // play the games in a Connect4Frame window instead of the headless Connect4Match; set with --gui
+    public static boolean showGames = false;
+
+    // number of worker threads playing games at once; set with --threads (1 plays everything on the main thread)
+    public static int threads = Runtime.getRuntime().availableProcessors();
+    // seeds every game of the run, so a run can be repeated exactly; set with --seed
+    public static long seed = System.nanoTime();
+    // records every headless game to this file, for GameRecordReader; set with --record
+    public static String recordFile = null;
+    // the opening book MyAgent plays from, written by BookGenerator; set with --book (by default MyAgent searches)
+    public static String bookFile = null;
+
+    private static SplittableRandom matchupSeeds;
+    private static ExecutorService pool;
+    private static GameRecordWriter recorder;
+    private static OpeningBook book;
+
     // Declaring ANSI_RESET so that we can reset the color
     public static final String ANSI_RESET = "\u001B[0m";
     // Declaring the background color
@@ -12,8 +36,49 @@ public class GraderRunner {
             = "\u001B[41m";
 
     public static void main(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--gui")) showGames = true;
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--record")) recordFile = args[++i];
+            else if (args[i].equals("--book")) bookFile = args[++i];
+        }
+
+        matchupSeeds = new SplittableRandom(seed);
+        if (threads > 1 && !showGames) {
+            pool = Executors.newFixedThreadPool(threads);
+        }
+        if (bookFile != null) {
+            try {
+                book = OpeningBook.open(Paths.get(bookFile));
+            } catch (IOException e) {
+                System.out.println("Can't open the opening book " + bookFile + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        if (recordFile != null) {
+            try {
+                recorder = new GameRecordWriter(Paths.get(recordFile), 7, 6);
+            } catch (IOException e) {
+                System.out.println("Can't record the games to " + recordFile + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        long start = System.nanoTime();
         List<GamesStatistics> yellowStatistics = playMyAgentAsYellow();
         List<GamesStatistics> redStatistics = playMyAgentAsRed();
+        long elapsed = System.nanoTime() - start;
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.out.println("Can't finish recording the games to " + recordFile + ": " + e.getMessage());
+            }
+        }
 
         // calculate grade - out of 104% plus bonus vs. Hulett/Minimax
         double grade = 0;
@@ -40,7 +105,28 @@ public class GraderRunner {
             grade += gameStats.percentTotal(gameStats.numRedWins) * grades[index++];
         }
 
+        int totalGames = 0;
+        for (GamesStatistics gameStats : yellowStatistics) totalGames += gameStats.numGames;
+        for (GamesStatistics gameStats : redStatistics) totalGames += gameStats.numGames;
+
+        // what MyAgent's search did over the whole run, to compare search efficiency between runs
+        SearchStatistics searchStatistics = new SearchStatistics(7);
+        for (GamesStatistics gameStats : yellowStatistics) {
+            if (gameStats.searchStatistics != null) searchStatistics.add(gameStats.searchStatistics);
+        }
+        for (GamesStatistics gameStats : redStatistics) {
+            if (gameStats.searchStatistics != null) searchStatistics.add(gameStats.searchStatistics);
+        }
+
         System.out.println("----------------");
+        System.out.println("Search statistics for MyAgent over every game:");
+        searchStatistics.printStatistics();
+        System.out.println("----------------");
+        System.out.printf("Played %d games in %.2f s (%.1f games per second) on %d thread(s) with seed %d\n",
+                totalGames, elapsed / 1e9, totalGames / (elapsed / 1e9), pool == null ? 1 : threads, seed);
+        if (recorder != null) {
+            System.out.printf("Recorded %d games to %s\n", recorder.getGameCount(), recordFile);
+        }
         grade -= flagInvalidMove? 10: 0;
         System.out.printf(ANSI_RED_BACKGROUND + "Project Grade: %.2f" + ANSI_RESET, grade);
 
@@ -50,63 +136,152 @@ public class GraderRunner {
     }
 
     /**
-     * Plays
+     * Creates a MyAgent for a game, playing from the opening book if one was given with --book.
      *
-     * @return
+     * @param game   the game the agent plays
+     * @param iAmRed whether the agent plays red
+     * @return the agent
      */
-    public static List<GamesStatistics> playMyAgentAsYellow() {
-        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games
-        Agent myAgent = new MyAgent(game, false); // create the yellow player, any subclass of Agent
+    private static Agent createMyAgent(Connect4Game game, boolean iAmRed) {
+        MyAgent agent = new MyAgent(game, iAmRed);
+        agent.setOpeningBook(book);
+        return agent;
+    }
 
+    /**
+     * Plays every opponent against a yellow MyAgent.
+     *
+     * @return the GamesStatistics of each matchup
+     */
+    public static List<GamesStatistics> playMyAgentAsYellow() {
         // the agents who are going to play against MyAgent
-        List<Agent> redAgents = new ArrayList<Agent>();
-        redAgents.add(new RandomAgent(game, true));
-        redAgents.add(new BeginnerAgent(game, true));
-        redAgents.add(new IntermediateAgent(game, true));
-        redAgents.add(new AdvancedAgent(game, true));
-        redAgents.add(new BrilliantAgent(game, true));
-        // redAgents.add(new HulettAgent(game, true));
+        List<AgentFactory> redAgents = new ArrayList<AgentFactory>();
+        redAgents.add(RandomAgent::new);
+        redAgents.add(BeginnerAgent::new);
+        redAgents.add(IntermediateAgent::new);
+        redAgents.add(AdvancedAgent::new);
+        redAgents.add(BrilliantAgent::new);
+        // redAgents.add(HulettAgent::new);
 
 
         // Play all games
         List<GamesStatistics> games = new ArrayList<GamesStatistics>();
-        for (Agent agent : redAgents) {
-            games.add(playGame(NUM_GAMES, game, agent, myAgent));
+        for (AgentFactory agent : redAgents) {
+            games.add(playGames(NUM_GAMES, agent, GraderRunner::createMyAgent));
         }
 
-        redAgents.add(new MyAgent(game, true));
-        games.add(playGame(10, game, redAgents.get(redAgents.size() - 1), myAgent));
+        games.add(playGames(10, GraderRunner::createMyAgent, GraderRunner::createMyAgent));
 
         return games;
     }
 
+    /**
+     * Plays every opponent against a red MyAgent.
+     *
+     * @return the GamesStatistics of each matchup
+     */
     public static List<GamesStatistics> playMyAgentAsRed() {
-        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games
-        Agent myAgent = new MyAgent(game, true); // create the yellow player, any subclass of Agent
-
-
         // the agents who are going to play against MyAgent
-        List<Agent> redAgents = new ArrayList<Agent>();
-        redAgents.add(new RandomAgent(game, false));
-        redAgents.add(new BeginnerAgent(game, false));
-        redAgents.add(new IntermediateAgent(game, false));
-        redAgents.add(new AdvancedAgent(game, false));
-        redAgents.add(new BrilliantAgent(game, false));
-        // redAgents.add(new HulettAgent(game, false));
+        List<AgentFactory> yellowAgents = new ArrayList<AgentFactory>();
+        yellowAgents.add(RandomAgent::new);
+        yellowAgents.add(BeginnerAgent::new);
+        yellowAgents.add(IntermediateAgent::new);
+        yellowAgents.add(AdvancedAgent::new);
+        yellowAgents.add(BrilliantAgent::new);
+        // yellowAgents.add(HulettAgent::new);
 
 
         // Play all games
         List<GamesStatistics> games = new ArrayList<GamesStatistics>();
-        for (Agent agent : redAgents) {
-            games.add(playGame(NUM_GAMES, game, myAgent, agent));
+        for (AgentFactory agent : yellowAgents) {
+            games.add(playGames(NUM_GAMES, GraderRunner::createMyAgent, agent));
         }
-        redAgents.add(new MyAgent(game, false));
-        games.add(playGame(10, game, myAgent, redAgents.get(redAgents.size() - 1)));
+        games.add(playGames(10, GraderRunner::createMyAgent, GraderRunner::createMyAgent));
         return games;
     }
 
     /**
-     * Plays the games NUM_GAMES times and tracks the game results (wins/ties)
+     * Plays one matchup. Every game gets its own seed, split from the run's seed, so the results only depend on the
+     * seed and not on how the games are shared out. With more than one thread the games are cut into shards, and each
+     * shard is played by a worker with its own Connect4Game and its own agents.
+     *
+     * @param numGames     the number of games to play
+     * @param redPlayer    creates the red player of the game.
+     * @param yellowPlayer creates the yellow player of the game.
+     * @return the GamesStatistics from playing these games
+     */
+    public static GamesStatistics playGames(int numGames, AgentFactory redPlayer, AgentFactory yellowPlayer) {
+        SplittableRandom matchup = matchupSeeds.split();
+        if (showGames) {
+            Connect4Game game = new Connect4Game(7, 6);
+            return playGame(numGames, game, redPlayer.create(game, true), yellowPlayer.create(game, false));
+        }
+
+        long[] gameSeeds = new long[numGames];
+        for (int i = 0; i < numGames; i++) {
+            gameSeeds[i] = matchup.nextLong();
+        }
+
+        long start = System.nanoTime();
+        GamesStatistics gameStatistics;
+        if (pool == null) {
+            gameStatistics = playShard(redPlayer, yellowPlayer, gameSeeds, 0, numGames);
+        } else {
+            // a few shards per thread keeps every thread busy even when some games run longer than others
+            int shardSize = Math.max(1, (numGames + threads * 4 - 1) / (threads * 4));
+            List<Future<GamesStatistics>> shards = new ArrayList<Future<GamesStatistics>>();
+            for (int from = 0; from < numGames; from += shardSize) {
+                final int shardStart = from, shardEnd = Math.min(numGames, from + shardSize);
+                shards.add(pool.submit(() -> playShard(redPlayer, yellowPlayer, gameSeeds, shardStart, shardEnd)));
+            }
+
+            gameStatistics = null;
+            try {
+                for (Future<GamesStatistics> shard : shards) {
+                    if (gameStatistics == null) {
+                        gameStatistics = shard.get();
+                    } else {
+                        gameStatistics.add(shard.get());
+                    }
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException("A tournament worker failed", e);
+            }
+        }
+        gameStatistics.elapsedNanos = System.nanoTime() - start;
+        return gameStatistics;
+    }
+
+    /**
+     * Plays some of a matchup's games on a new game board with new agents.
+     *
+     * @param redPlayer    creates the red player of the game.
+     * @param yellowPlayer creates the yellow player of the game.
+     * @param gameSeeds    the seed of every game in the matchup
+     * @param from         the first game to play
+     * @param to           one past the last game to play
+     * @return the GamesStatistics from playing these games
+     */
+    private static GamesStatistics playShard(AgentFactory redPlayer, AgentFactory yellowPlayer, long[] gameSeeds,
+                                             int from, int to) {
+        Connect4Game game = new Connect4Game(7, 6); // create the game; these sizes can be altered for larger or smaller games
+        Agent red = redPlayer.create(game, true);
+        Agent yellow = yellowPlayer.create(game, false);
+        Connect4Match match = new Connect4Match(game, red, yellow);
+        match.setRecorder(recorder);
+
+        GamesStatistics gameStatistics = new GamesStatistics(red, yellow);
+        for (int i = from; i < to; i++) {
+            gameStatistics.addResult(match.play(gameSeeds[i]));
+        }
+        gameStatistics.addSearchStatistics(red);
+        gameStatistics.addSearchStatistics(yellow);
+        return gameStatistics;
+    }
+
+    /**
+     * Plays the games NUM_GAMES times in a Connect4Frame window and tracks the game results (wins/ties/invalid
+     * moves). This is how matchups are played when showGames is set; otherwise playGames() plays them headless.
      *
      * @param NUM_GAMES    the number of games to play
      * @param game         the connect 4 game to play with
@@ -116,8 +291,9 @@ public class GraderRunner {
      */
     public static GamesStatistics playGame(final int NUM_GAMES, Connect4Game game, Agent redPlayer, Agent yellowPlayer) {
         GamesStatistics gameStatistics = new GamesStatistics(redPlayer, yellowPlayer);
-        gameStatistics.numGames = NUM_GAMES;
 
+        long start = System.nanoTime();
+        gameStatistics.numGames = NUM_GAMES;
         Connect4Frame gameFrame = new Connect4Frame(game, redPlayer, yellowPlayer); // create the game window
 
         // play the game
@@ -131,9 +307,14 @@ public class GraderRunner {
                 gameStatistics.numYellowWins++;
             } else if (game.boardFull()) {
                 gameStatistics.numTies++;
+            } else {
+                gameStatistics.numInvalidMoves++; // the frame stops early only on an invalid move
             }
         }
         gameFrame.dispose();
+        gameStatistics.addSearchStatistics(redPlayer);
+        gameStatistics.addSearchStatistics(yellowPlayer);
+        gameStatistics.elapsedNanos = System.nanoTime() - start;
         return gameStatistics;
     }
 }
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps MyAgent's heuristic score of a Connect4BitBoard up to date as the search plays and takes
+ * back tokens, so a leaf is scored without looking at the board at all.
+ *
+ * The score is a sum over fixed windows of slots (MyAgent's horizontal rows and diagonal slices)
+ * plus, in every column that still has room, the window of its lowest empty slot and the three
+ * tokens below it. The score of a window only depends on how many red and yellow tokens are in it,
+ * so each window's score is looked up in a table built from a WindowScorer, and a token only
+ * changes the windows through its own slot and the window of its own column.
+ */
+public class IncrementalEvaluator {
+    /**
+     * Scores one window, the way MyAgent.evaluateBoard does.
+     */
+    public interface WindowScorer {
+        /**
+         * @param window the slots of the window
+         * @param mine   the agent's tokens
+         * @param theirs the opponent's tokens
+         * @return the window's contribution to the score
+         */
+        int score(long window, long mine, long theirs);
+    }
+
+    private static final int MAX_WINDOW = 4; // the largest window that can be added
+    private static final int COUNTS = MAX_WINDOW + 1;
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int stride;
+    private final boolean iAmRed;
+
+    private final List<Long> windowList = new ArrayList<>();
+    private final List<int[]> tableList = new ArrayList<>();
+    private long[] windows;
+    private int[] scoreTables; // the score of window w with r red and y yellow tokens is at w * COUNTS^2 + r * COUNTS + y
+    private int[][] cellWindows; // the windows through each bit of the board
+    private int[] windowStates; // w * COUNTS^2 + r * COUNTS + y for each window w, its index into scoreTables
+
+    private int[][][] columnScores; // [column][height][which of the three tokens below the lowest empty slot are red]
+    private int[] currentColumnScores;
+
+    private int score;
+    private final int[] scoreStack; // the score before each token played, so undone() only has to fix the counts
+    private int stackSize;
+
+    /**
+     * Creates an evaluator with no windows yet.
+     *
+     * @param board       a board of the size to evaluate
+     * @param iAmRed      true if the score is for the red player
+     * @param columnScorer scores the window of a column's lowest empty slot and the three tokens below it
+     */
+    public IncrementalEvaluator(Connect4BitBoard board, boolean iAmRed, WindowScorer columnScorer) {
+        this.columnCount = board.getColumnCount();
+        this.rowCount = board.getRowCount();
+        this.stride = rowCount + 1;
+        this.iAmRed = iAmRed;
+
+        columnScores = new int[columnCount][rowCount + 1][8];
+        for (int col = 0; col < columnCount; col++) {
+            for (int height = 3; height < rowCount; height++) {
+                long window = 0xFL << (col * stride + height - 3);
+                for (int red = 0; red < 8; red++) {
+                    long redTokens = (long) red << (col * stride + height - 3);
+                    long yellowTokens = (long) (7 & ~red) << (col * stride + height - 3);
+                    columnScores[col][height][red] = iAmRed ? columnScorer.score(window, redTokens, yellowTokens)
+                            : columnScorer.score(window, yellowTokens, redTokens);
+                }
+            }
+        }
+        currentColumnScores = new int[columnCount];
+        scoreStack = new int[columnCount * rowCount];
+    }
+
+    /**
+     * Adds windows that are scored wherever they are on the board.
+     *
+     * @param windows the slots of each window, at most four per window
+     * @param scorer  scores one of the windows
+     */
+    public void addWindows(long[] windows, WindowScorer scorer) {
+        for (long window : windows) {
+            int size = Long.bitCount(window);
+            if (size > MAX_WINDOW) {
+                throw new IllegalArgumentException("A window can have at most " + MAX_WINDOW + " slots.");
+            }
+
+            // every way of filling the window gives the same score as any other with the same counts
+            long[] slots = new long[size];
+            long rest = window;
+            for (int i = 0; i < size; i++) {
+                slots[i] = Long.lowestOneBit(rest);
+                rest ^= slots[i];
+            }
+            int[] table = new int[COUNTS * COUNTS];
+            for (int red = 0; red <= size; red++) {
+                for (int yellow = 0; red + yellow <= size; yellow++) {
+                    long redTokens = 0, yellowTokens = 0;
+                    for (int i = 0; i < red; i++) redTokens |= slots[i];
+                    for (int i = red; i < red + yellow; i++) yellowTokens |= slots[i];
+                    table[red * COUNTS + yellow] = iAmRed ? scorer.score(window, redTokens, yellowTokens)
+                            : scorer.score(window, yellowTokens, redTokens);
+                }
+            }
+            windowList.add(window);
+            tableList.add(table);
+        }
+
+        this.windows = new long[windowList.size()];
+        this.scoreTables = new int[windowList.size() * COUNTS * COUNTS];
+        List<List<Integer>> throughCell = new ArrayList<>();
+        for (int bit = 0; bit < columnCount * stride; bit++) throughCell.add(new ArrayList<>());
+        for (int w = 0; w < this.windows.length; w++) {
+            this.windows[w] = windowList.get(w);
+            System.arraycopy(tableList.get(w), 0, scoreTables, w * COUNTS * COUNTS, COUNTS * COUNTS);
+            for (int bit = 0; bit < columnCount * stride; bit++) {
+                if ((this.windows[w] >>> bit & 1) != 0) throughCell.get(bit).add(w);
+            }
+        }
+        cellWindows = new int[columnCount * stride][];
+        for (int bit = 0; bit < cellWindows.length; bit++) {
+            cellWindows[bit] = throughCell.get(bit).stream().mapToInt(Integer::intValue).toArray();
+        }
+        windowStates = new int[this.windows.length];
+    }
+
+    /**
+     * Scores a board from scratch. After this, played() and undone() keep the score up to date.
+     *
+     * @param board the board to score
+     */
+    public void reset(Connect4BitBoard board) {
+        long red = board.getTokens(true);
+        long yellow = board.getTokens(false);
+        score = 0;
+        stackSize = 0;
+        for (int w = 0; w < windows.length; w++) {
+            windowStates[w] = w * COUNTS * COUNTS + Long.bitCount(windows[w] & red) * COUNTS
+                    + Long.bitCount(windows[w] & yellow);
+            score += scoreTables[windowStates[w]];
+        }
+        for (int col = 0; col < columnCount; col++) {
+            currentColumnScores[col] = columnScore(board, col);
+            score += currentColumnScores[col];
+        }
+    }
+
+    /**
+     * Adds a token to the score. Call this after board.play(col).
+     *
+     * @param board the board the token was played on
+     * @param col   the column it was played in
+     */
+    public void played(Connect4BitBoard board, int col) {
+        scoreStack[stackSize++] = score;
+        int step = board.isRedToMove() ? 1 : COUNTS; // the player who just moved isn't the one to move
+        for (int w : cellWindows[col * stride + board.getHeight(col) - 1]) {
+            score -= scoreTables[windowStates[w]];
+            windowStates[w] += step;
+            score += scoreTables[windowStates[w]];
+        }
+
+        score -= currentColumnScores[col];
+        currentColumnScores[col] = columnScore(board, col);
+        score += currentColumnScores[col];
+    }
+
+    /**
+     * Takes a token back out of the score. Call this after board.undo(), in the opposite order to played().
+     *
+     * @param board the board the token was taken back on
+     * @param col   the column it was taken out of
+     */
+    public void undone(Connect4BitBoard board, int col) {
+        score = scoreStack[--stackSize];
+        int step = board.isRedToMove() ? COUNTS : 1;
+        for (int w : cellWindows[col * stride + board.getHeight(col)]) {
+            windowStates[w] -= step;
+        }
+        currentColumnScores[col] = columnScore(board, col);
+    }
+
+    /**
+     * @return the heuristic score of the board, for the player given to the constructor
+     */
+    public int getScore() {
+        return score;
+    }
+
+    private int columnScore(Connect4BitBoard board, int col) {
+        int height = board.getHeight(col);
+        if (height < 3 || height >= rowCount) return 0;
+        int red = (int) (board.getTokens(true) >>> (col * stride + height - 3)) & 7;
+        return columnScores[col][height][red];
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Scores a Connect4BitBoard over every line of four slots on the board: on 7x6, 24 horizontal, 21
+ * vertical and 24 diagonal lines. A line that only one player has tokens in is worth THREE to that
+ * player if it holds three of their tokens and TWO if it holds two.
+ *
+ * All lines in one direction are scored at once. Shifting a bitboard by the step between slots
+ * lines up the second, third and fourth slot of every line with its first, so a bit-sliced adder
+ * over the four shifted boards counts the tokens in every line in parallel, and Long.bitCount adds
+ * up the lines that score.
+ */
+public class LineEvaluator {
+    public static final int THREE = 1000;
+    public static final int TWO = 500;
+
+    private final long boardMask; // every slot on the board; the sentinel bits and anything past the last column are off it
+    private final int[] steps; // the bit distance between neighbouring slots of a line in each direction
+
+    /**
+     * Creates an evaluator for a board size.
+     *
+     * @param board a board of the size to evaluate
+     */
+    public LineEvaluator(Connect4BitBoard board) {
+        int stride = board.getRowCount() + 1;
+        long boardMask = 0;
+        for (int col = 0; col < board.getColumnCount(); col++) {
+            boardMask |= ((1L << board.getRowCount()) - 1) << (col * stride);
+        }
+        this.boardMask = boardMask;
+        this.steps = new int[]{1, stride, stride - 1, stride + 1}; // vertical, horizontal and both diagonals
+    }
+
+    /**
+     * Scores a position.
+     *
+     * @param mine   the tokens of the player the score is for
+     * @param theirs the opponent's tokens
+     * @return the value of mine's lines minus the value of theirs
+     */
+    public int evaluate(long mine, long theirs) {
+        return score(mine, boardMask & ~theirs) - score(theirs, boardMask & ~mine);
+    }
+
+    /**
+     * @return the number of lines of four on the board
+     */
+    public int lineCount() {
+        int lines = 0;
+        for (int step : steps) {
+            lines += Long.bitCount(lineStarts(boardMask, step));
+        }
+        return lines;
+    }
+
+    /**
+     * Adds up the lines of one player.
+     *
+     * @param tokens the player's tokens
+     * @param open   the slots on the board the opponent doesn't hold
+     * @return the value of the player's lines
+     */
+    private int score(long tokens, long open) {
+        int score = 0;
+        for (int step : steps) {
+            long lines = lineStarts(open, step); // the first slot of every line the opponent isn't in
+
+            long a = tokens, b = tokens >>> step, c = tokens >>> (2 * step), d = tokens >>> (3 * step);
+            long ones = a ^ b ^ c ^ d;
+            long twos = ((a & b) ^ (c & d)) ^ ((a ^ b) & (c ^ d)); // the 2s bit of a + b + c + d, which is 0 for 4
+
+            score += THREE * Long.bitCount(lines & ones & twos);
+            score += TWO * Long.bitCount(lines & ~ones & twos);
+        }
+        return score;
+    }
+
+    /**
+     * @return the slots where a line of four slots that are all in the given set starts
+     */
+    private static long lineStarts(long slots, int step) {
+        return slots & (slots >>> step) & (slots >>> (2 * step)) & (slots >>> (3 * step));
+    }
+}
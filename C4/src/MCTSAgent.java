@@ -0,0 +1,471 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An agent that picks its moves by Monte Carlo Tree Search instead of minimax. Each playout walks down the tree,
+ * choosing children by UCT (their win rate plus a bonus for having been tried less), adds the children of the node it
+ * stops at, and finishes the game with a quick random playout on a Connect4BitBoard that only looks one move ahead: it
+ * wins if it can, blocks if it must, and otherwise plays anywhere. The result is added to every node on the way down.
+ * The move played is the root's most visited child.
+ *
+ * The tree is an arena of parallel primitive arrays, one entry per node, with each node's children next to each other.
+ * Nothing is allocated per playout. When the agent moves again, the part of the tree under the position after its own
+ * move and the opponent's reply is kept: it is copied to the front of a second arena, which then swaps places with the
+ * first, so the rest of the tree is freed for the new search.
+ *
+ * With more than one thread, the threads search the same tree at once. A thread counts VIRTUAL_LOSS lost playouts on
+ * every node it passes through until its playout finishes, so the other threads are steered to other branches, and
+ * the counts are updated with atomic adds. A node is expanded by whichever thread claims it first.
+ */
+public class MCTSAgent extends Agent {
+    private static final double EXPLORATION = 1.0; // the weight of UCT's bonus for less visited children
+    private static final int VIRTUAL_LOSS = 3; // playouts counted as lost on a node while a thread is below it
+    private static final int EXPAND_VISITS = 1; // a node gets children once it has finished this many playouts
+    private static final int DEFAULT_PLAYOUTS = 20000; // per move, when there is no time budget
+    private static final int DEFAULT_CAPACITY = 1 << 19; // nodes in each arena, about 7 MB
+    private static final int UNEXPANDED = -1; // the firstChild of a node without children
+    private static final int EXPANDING = -2; // the firstChild of a node a thread is adding children to
+    private static final int RED = 1, YELLOW = -1, DRAW = 0; // playout results
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // the tree: node i's children are firstChild[i] ... firstChild[i] + childCount[i] - 1
+    private final int capacity;
+    private int[] firstChild;
+    private byte[] childCount;
+    private byte[] column; // the column played to reach the node
+    private int[] visits; // finished playouts through the node, plus VIRTUAL_LOSS for each thread still below it
+    private int[] score; // 2 for each win and 1 for each draw, for the player who played the node's column
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private int root;
+    // the arena the kept part of the tree is copied into; it swaps places with the tree every move
+    private int[] spareFirstChild;
+    private byte[] spareChildCount;
+    private byte[] spareColumn;
+    private int[] spareVisits;
+    private int[] spareScore;
+
+    // to find the position after the opponent's reply in the tree on the next move
+    private int playedNode = -1; // the node of the agent's last move
+    private long playedHash; // the hash of the position after it
+
+    private final int[] columnOrder; // children are added center column first
+    private long moveTimeMillis;
+    private long playoutsPerMove = DEFAULT_PLAYOUTS;
+    private int threads = 1;
+    private long seed = System.nanoTime();
+    private Worker[] workers;
+    private ExecutorService pool;
+    private final AtomicLong playoutsStarted = new AtomicLong();
+    private long deadline; // System.nanoTime() at which the search stops; Long.MAX_VALUE for none
+
+    private long lastPlayouts;
+    private long totalPlayouts;
+    private long totalNanos;
+
+    /**
+     * Constructs a new agent that runs DEFAULT_PLAYOUTS playouts a move on one thread.
+     *
+     * @param game   The game the agent will be playing.
+     * @param iAmRed True if the agent is Red, False if the agent is Yellow.
+     */
+    public MCTSAgent(Connect4Game game, boolean iAmRed) {
+        this(game, iAmRed, 0);
+    }
+
+    /**
+     * Constructs a new agent that searches for as long as a time budget allows on every move.
+     *
+     * @param game           The game the agent will be playing.
+     * @param iAmRed         True if the agent is Red, False if the agent is Yellow.
+     * @param moveTimeMillis The time budget per move in milliseconds, or 0 to run a fixed number of playouts.
+     */
+    public MCTSAgent(Connect4Game game, boolean iAmRed, long moveTimeMillis) {
+        super(game, iAmRed);
+        if (game.getWinLength() != 4 || !Connect4BitBoard.fits(game.getColumnCount(), game.getRowCount())) {
+            throw new IllegalArgumentException("MCTSAgent only plays four in a row on boards that fit in 64 bits.");
+        }
+        this.moveTimeMillis = moveTimeMillis;
+        this.capacity = DEFAULT_CAPACITY;
+        columnOrder = Connect4BitBoard.centerOutOrder(game.getColumnCount());
+    }
+
+    /**
+     * Sets the time budget per move.
+     *
+     * @param moveTimeMillis The time budget in milliseconds, or 0 to run a fixed number of playouts instead.
+     */
+    public void setMoveTime(long moveTimeMillis) {
+        this.moveTimeMillis = moveTimeMillis;
+    }
+
+    /**
+     * Sets the number of playouts per move, used when there is no time budget.
+     *
+     * @param playoutsPerMove the number of playouts
+     */
+    public void setPlayoutsPerMove(long playoutsPerMove) {
+        this.playoutsPerMove = playoutsPerMove;
+    }
+
+    /**
+     * Sets the number of threads running playouts, including the one calling move().
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public void reseed(long seed) {
+        this.seed = seed;
+        if (workers != null) {
+            for (int i = 0; i < workers.length; i++) workers[i].random = workerRandom(i);
+        }
+    }
+
+    private SplittableRandom workerRandom(int i) {
+        return new SplittableRandom(seed + i * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Searches the current position and plays the root's most visited column.
+     */
+    @Override
+    public void move() {
+        long start = System.nanoTime();
+        if (firstChild == null) createArenas();
+        if (workers == null || workers.length != threads) createWorkers();
+
+        for (Worker worker : workers) {
+            worker.board.load(myGame, iAmRed);
+        }
+        Connect4BitBoard board = workers[0].board;
+        reRoot(board);
+
+        playoutsStarted.set(0);
+        deadline = moveTimeMillis > 0 ? start + moveTimeMillis * 1_000_000 : Long.MAX_VALUE;
+        List<Future<?>> helpers = new ArrayList<>();
+        for (int i = 1; i < workers.length; i++) {
+            helpers.add(pool.submit(workers[i]));
+        }
+        workers[0].run();
+        try {
+            for (Future<?> helper : helpers) {
+                helper.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("A playout thread failed", e);
+        }
+
+        int best = -1;
+        for (int child = firstChild[root], end = child + childCount[root]; child < end; child++) {
+            if (best < 0 || visits[child] > visits[best]) best = child;
+        }
+        int col = column[best];
+        board.play(col);
+        playedHash = board.getHash();
+        playedNode = best;
+        board.undo();
+
+        Connect4Slot slot = myGame.getColumn(col).getSlot(myGame.dropRow(col));
+        if (iAmRed) {
+            slot.addRed();
+        } else {
+            slot.addYellow();
+        }
+
+        lastPlayouts = Math.min(playoutsStarted.get(), moveTimeMillis > 0 ? Long.MAX_VALUE : playoutsPerMove);
+        totalPlayouts += lastPlayouts;
+        totalNanos += System.nanoTime() - start;
+    }
+
+    private void createArenas() {
+        firstChild = new int[capacity];
+        childCount = new byte[capacity];
+        column = new byte[capacity];
+        visits = new int[capacity];
+        score = new int[capacity];
+        spareFirstChild = new int[capacity];
+        spareChildCount = new byte[capacity];
+        spareColumn = new byte[capacity];
+        spareVisits = new int[capacity];
+        spareScore = new int[capacity];
+    }
+
+    private void createWorkers() {
+        if (pool != null) pool.shutdownNow();
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(workerRandom(i));
+        }
+        pool = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "MCTSAgent playouts");
+            thread.setDaemon(true); // a finished game shouldn't keep the program alive
+            return thread;
+        });
+    }
+
+    /**
+     * Shuts down the playout threads. The agent can still move afterwards; it starts new threads if it needs them.
+     */
+    public void shutdownThreads() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+            workers = null;
+        }
+    }
+
+    /**
+     * Makes the current position the root of the tree. If it is the position after the agent's last move and one
+     * reply, that part of the tree is kept and copied to the front of the spare arena, breadth first, which then
+     * becomes the tree: each node copied is scanned in turn and its children copied after the last node, as a
+     * copying garbage collector does. Otherwise the tree starts again from a single node.
+     *
+     * @param board the current position
+     */
+    private void reRoot(Connect4BitBoard board) {
+        int newRoot = -1;
+        int reply = myGame.getLastMove();
+        if (playedNode >= 0 && reply >= 0 && board.getHeight(reply) > 0) {
+            // the hash before the reply, undoing what Connect4BitBoard.play() does to it
+            long before = board.getHash() ^ Zobrist.key(!iAmRed, reply, board.getHeight(reply) - 1)
+                    ^ Zobrist.RED_TO_MOVE;
+            if (before == playedHash && firstChild[playedNode] >= 0) {
+                for (int child = firstChild[playedNode], end = child + childCount[playedNode]; child < end; child++) {
+                    if (column[child] == reply) newRoot = child;
+                }
+            }
+        }
+        playedNode = -1;
+
+        if (newRoot < 0) {
+            firstChild[0] = UNEXPANDED;
+            childCount[0] = 0;
+            visits[0] = 0;
+            score[0] = 0;
+            nodeCount.set(1);
+            root = 0;
+            return;
+        }
+
+        copyNode(newRoot, 0);
+        int free = 1;
+        for (int scan = 0; scan < free; scan++) {
+            int from = spareFirstChild[scan];
+            if (from < 0) continue;
+            spareFirstChild[scan] = free;
+            for (int i = 0; i < spareChildCount[scan]; i++) {
+                copyNode(from + i, free++);
+            }
+        }
+        int[] ints = firstChild; firstChild = spareFirstChild; spareFirstChild = ints;
+        byte[] bytes = childCount; childCount = spareChildCount; spareChildCount = bytes;
+        bytes = column; column = spareColumn; spareColumn = bytes;
+        ints = visits; visits = spareVisits; spareVisits = ints;
+        ints = score; score = spareScore; spareScore = ints;
+        nodeCount.set(free);
+        root = 0;
+    }
+
+    /**
+     * Copies a node of the tree into the spare arena, still pointing at its children in the tree.
+     */
+    private void copyNode(int from, int to) {
+        spareFirstChild[to] = firstChild[from];
+        spareChildCount[to] = childCount[from];
+        spareColumn[to] = column[from];
+        spareVisits[to] = visits[from];
+        spareScore[to] = score[from];
+    }
+
+    /**
+     * One thread's playouts, each on the thread's own copy of the position.
+     */
+    private final class Worker implements Runnable {
+        final Connect4BitBoard board;
+        SplittableRandom random;
+        private final int[] path; // the nodes of the current playout, from the root
+        private int rolloutMoves; // the tokens played by the last rollout
+
+        Worker(SplittableRandom random) {
+            this.board = new Connect4BitBoard(myGame.getColumnCount(), myGame.getRowCount());
+            this.random = random;
+            this.path = new int[myGame.getColumnCount() * myGame.getRowCount() + 1];
+        }
+
+        @Override
+        public void run() {
+            // the first playout always runs, so the root has children to choose from
+            while (playoutsStarted.getAndIncrement() < playoutsPerMove || moveTimeMillis > 0) {
+                playout();
+                if (System.nanoTime() >= deadline) break;
+            }
+        }
+
+        /**
+         * Runs one playout: down the tree, then a random game from where it stops, then the result back up.
+         */
+        private void playout() {
+            int node = root;
+            int depth = 0;
+            int moves = 0; // tokens played on the board, to take back afterwards
+            int winner;
+            while (true) {
+                path[depth++] = node;
+                INTS.getAndAdd(visits, node, VIRTUAL_LOSS);
+                if (moves > 0 && board.lastMoveWon()) {
+                    winner = board.isRedToMove() ? YELLOW : RED;
+                    break;
+                }
+                if (board.isFull()) {
+                    winner = DRAW;
+                    break;
+                }
+
+                int first = (int) INTS.getAcquire(firstChild, node);
+                if (first == UNEXPANDED && (node == root || (int) INTS.getVolatile(visits, node) > VIRTUAL_LOSS
+                        + EXPAND_VISITS - 1)) {
+                    first = expand(node);
+                }
+                if (first < 0) { // a leaf, or another thread is still adding its children
+                    winner = rollout();
+                    moves += rolloutMoves;
+                    break;
+                }
+
+                node = select(node, first);
+                board.play(column[node]);
+                moves++;
+            }
+
+            for (int i = 0; i < depth; i++) {
+                // node i was played by the player not to move at the root when i is even
+                boolean moverRed = (i % 2 == 1) == iAmRed;
+                INTS.getAndAdd(visits, path[i], 1 - VIRTUAL_LOSS);
+                INTS.getAndAdd(score, path[i], winner == DRAW ? 1 : (winner == RED) == moverRed ? 2 : 0);
+            }
+            for (int i = 0; i < moves; i++) {
+                board.undo();
+            }
+        }
+
+        /**
+         * Adds a node's children, one for every column that isn't full, unless another thread got there first or
+         * the arena is full.
+         *
+         * @return the node's first child, or a negative number if it has none yet
+         */
+        private int expand(int node) {
+            if (!INTS.compareAndSet(firstChild, node, UNEXPANDED, EXPANDING)) {
+                return (int) INTS.getAcquire(firstChild, node);
+            }
+            int n = 0;
+            for (int col : columnOrder) {
+                if (board.canPlay(col)) n++;
+            }
+            int first;
+            do {
+                first = nodeCount.get();
+                if (first + n > capacity) { // no room; the node stays a leaf for this move
+                    INTS.setRelease(firstChild, node, UNEXPANDED);
+                    return UNEXPANDED;
+                }
+            } while (!nodeCount.compareAndSet(first, first + n));
+
+            int child = first;
+            for (int col : columnOrder) {
+                if (!board.canPlay(col)) continue;
+                firstChild[child] = UNEXPANDED;
+                childCount[child] = 0;
+                column[child] = (byte) col;
+                visits[child] = 0;
+                score[child] = 0;
+                child++;
+            }
+            childCount[node] = (byte) n;
+            INTS.setRelease(firstChild, node, first); // publishes the children to the other threads
+            return first;
+        }
+
+        /**
+         * @return the child with the highest UCT value; children that haven't been tried yet come first
+         */
+        private int select(int node, int first) {
+            double logVisits = Math.log(Math.max(1, (int) INTS.getVolatile(visits, node)));
+            int best = first;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int child = first, end = first + childCount[node]; child < end; child++) {
+                int childVisits = (int) INTS.getVolatile(visits, child);
+                if (childVisits == 0) return child;
+                double value = (int) INTS.getVolatile(score, child) / (2.0 * childVisits)
+                        + EXPLORATION * Math.sqrt(logVisits / childVisits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays the game out from the board's position, which isn't won or full: win if possible, else block the
+         * opponent's win if there is one, else a random column.
+         *
+         * @return RED, YELLOW or DRAW; rolloutMoves is set to the number of tokens played
+         */
+        private int rollout() {
+            rolloutMoves = 0;
+            while (true) {
+                boolean red = board.isRedToMove();
+                long playable = board.getPlayableCells();
+                if (playable == 0) return DRAW;
+                if ((board.getWinningCells(red) & playable) != 0) return red ? RED : YELLOW;
+                long blocks = board.getWinningCells(!red) & playable;
+                long choices = blocks != 0 ? blocks : playable;
+
+                for (int skip = random.nextInt(Long.bitCount(choices)); skip > 0; skip--) {
+                    choices &= choices - 1; // drop the lowest cell
+                }
+                board.play(board.getColumn(Long.lowestOneBit(choices)));
+                rolloutMoves++;
+            }
+        }
+    }
+
+    /**
+     * @return the number of playouts of the last move
+     */
+    public long getLastPlayouts() {
+        return lastPlayouts;
+    }
+
+    /**
+     * @return the playouts per second over every move since the agent was created
+     */
+    public double getPlayoutsPerSecond() {
+        return totalNanos == 0 ? 0 : totalPlayouts / (totalNanos / 1e9);
+    }
+
+    /**
+     * @return the number of nodes in the tree
+     */
+    public int getTreeSize() {
+        return nodeCount.get();
+    }
+
+    @Override
+    public String getName() {
+        return "MCTS Agent";
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Plays MCTSAgent against MyAgent and the baseline agents, with MCTSAgent and MyAgent given the same time per move,
+ * and prints how often MCTSAgent won and how many playouts per second it ran. Every opponent plays the same number of
+ * seeded games with each color, so a run can be repeated.
+ *
+ * Usage: java MCTSComparison [--games N] [--time MILLIS] [--threads T] [--seed S] [--filter TEXT]
+ */
+public class MCTSComparison {
+    public static void main(String[] args) {
+        int games = 20;
+        long moveTimeMillis = 50;
+        int threads = 1;
+        long seed = 1;
+        String filter = "";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--games")) games = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--time")) moveTimeMillis = Long.parseLong(args[++i]);
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+            else if (args[i].equals("--filter")) filter = args[++i];
+        }
+        final long time = moveTimeMillis;
+
+        Map<String, AgentFactory> opponents = new LinkedHashMap<>();
+        opponents.put("Random Agent", RandomAgent::new);
+        opponents.put("Beginner Agent", BeginnerAgent::new);
+        opponents.put("Intermediate Agent", IntermediateAgent::new);
+        opponents.put("Advanced Agent", AdvancedAgent::new);
+        opponents.put("Brilliant Agent", BrilliantAgent::new);
+        opponents.put("ChinmayAgent", (game, iAmRed) -> new MyAgent(game, iAmRed, time));
+
+        System.out.printf("%d games with each color, %d ms per move, %d thread(s), seed %d%n", games, moveTimeMillis,
+                threads, seed);
+        System.out.printf("%-20s %6s %6s %6s %8s %9s %16s%n", "opponent", "wins", "draws", "losses", "invalid",
+                "win rate", "playouts/s");
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (Map.Entry<String, AgentFactory> opponent : opponents.entrySet()) {
+            if (!opponent.getKey().contains(filter)) continue;
+            int[] results = new int[4]; // wins, draws, losses and invalid games, for MCTSAgent
+            double playoutsPerSecond = 0;
+            for (int color = 0; color < 2; color++) {
+                boolean mctsRed = color == 0;
+                Connect4Game game = new Connect4Game(7, 6);
+                MCTSAgent mcts = new MCTSAgent(game, mctsRed, moveTimeMillis);
+                mcts.setThreads(threads);
+                Agent other = opponent.getValue().create(game, !mctsRed);
+                Connect4Match match = mctsRed ? new Connect4Match(game, mcts, other)
+                        : new Connect4Match(game, other, mcts);
+                for (int i = 0; i < games; i++) {
+                    char result = match.play(seeds.nextLong());
+                    if (result == Connect4Match.TIE) {
+                        results[1]++;
+                    } else if (result == Connect4Match.INVALID) {
+                        results[3]++;
+                    } else {
+                        results[(result == 'R') == mctsRed ? 0 : 2]++;
+                    }
+                }
+                playoutsPerSecond += mcts.getPlayoutsPerSecond() / 2;
+                mcts.shutdownThreads();
+                if (other instanceof MyAgent) ((MyAgent) other).shutdownHelpers();
+            }
+            System.out.printf("%-20s %6d %6d %6d %8d %8.1f%% %16.0f%n", opponent.getKey(), results[0], results[1],
+                    results[2], results[3], 100.0 * (results[0] + results[1] / 2.0) / (2 * games), playoutsPerSecond);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.Random;
+
+/**
+ * Checks that Connect4Game's move stack restores the right winner and highlights when moves are taken back. Random
+ * games are played until someone wins, dropping tokens sometimes with play() and sometimes straight into the slots
+ * the way the baseline agents do, now and then out of turn, and asking gameWon() only now and then, so the winner
+ * cache is left in every state it can be in. Some moves are then undone, and the board is compared with a fresh
+ * board holding the same tokens: gameWon() must agree and the same slots must be highlighted.
+ *
+ * Usage: java MoveStackCheck [--games N] [--seed S]
+ */
+public class MoveStackCheck {
+    public static void main(String[] args) {
+        int games = 20000;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--games")) games = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+        }
+
+        int failures = checkFourInARowUndone() ? 0 : 1;
+        Random random = new Random(seed);
+        int[][] sizes = {{7, 6}, {4, 4}, {9, 8}};
+        for (int[] size : sizes) {
+            Connect4Game game = new Connect4Game(size[0], size[1]);
+            for (int i = 0; i < games; i++) {
+                if (!checkRandomGame(game, random)) failures++;
+            }
+        }
+        if (failures == 0) {
+            System.out.println("All checks pass.");
+        } else {
+            System.out.println(failures + " checks failed.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Four red tokens dropped into the bottom row through the slots, with nobody asking who won, and the last one
+     * taken back: the three left don't win.
+     */
+    private static boolean checkFourInARowUndone() {
+        Connect4Game game = new Connect4Game(7, 6);
+        for (int col = 0; col < 4; col++) {
+            game.getColumn(col).getSlot(game.getRowCount() - 1).addRed();
+        }
+        game.undo();
+        return matchesFreshBoard(game, "four in a row, last one undone");
+    }
+
+    /**
+     * Plays a random game to its first win or a full board, then undoes some of it.
+     */
+    private static boolean checkRandomGame(Connect4Game game, Random random) {
+        game.clearBoard();
+        game.setRedPlayedFirst(random.nextBoolean());
+        while (game.getLegalMoveCount() > 0 && freshBoard(game).gameWon() == 'N') {
+            int col = game.getLegalMove(random.nextInt(game.getLegalMoveCount()));
+            if (random.nextBoolean()) {
+                game.play(col);
+            } else if ((game.sideToMove() == 'R') != (random.nextInt(4) == 0)) {
+                game.getColumn(col).getSlot(game.dropRow(col)).addRed();
+            } else {
+                game.getColumn(col).getSlot(game.dropRow(col)).addYellow();
+            }
+            if (random.nextInt(3) == 0) game.gameWon();
+        }
+        int undos = 1 + random.nextInt(game.moveCount());
+        for (int i = 0; i < undos; i++) {
+            game.undo();
+            if (random.nextInt(3) == 0) game.gameWon();
+        }
+        return matchesFreshBoard(game, "random game with " + undos + " moves undone");
+    }
+
+    private static boolean matchesFreshBoard(Connect4Game game, String description) {
+        Connect4Game fresh = freshBoard(game);
+        char expected = fresh.gameWon();
+        char actual = game.gameWon();
+        if (actual != expected) {
+            System.out.printf("%s: gameWon() is %c, a fresh board says %c%n", description, actual, expected);
+            return false;
+        }
+        for (int col = 0; col < game.getColumnCount(); col++) {
+            for (int row = 0; row < game.getRowCount(); row++) {
+                if (game.getColumn(col).getSlot(row).getIsHighlighted()
+                        != fresh.getColumn(col).getSlot(row).getIsHighlighted()) {
+                    System.out.printf("%s: the highlight at column %d, row %d differs from a fresh board%n",
+                            description, col, row);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a new board with the same tokens, placed through the slots
+     */
+    private static Connect4Game freshBoard(Connect4Game game) {
+        Connect4Game fresh = new Connect4Game(game.getColumnCount(), game.getRowCount());
+        for (int col = 0; col < game.getColumnCount(); col++) {
+            for (int row = 0; row < game.getRowCount(); row++) {
+                Connect4Slot slot = game.getColumn(col).getSlot(row);
+                if (!slot.getIsFilled()) continue;
+                if (slot.getIsRed()) {
+                    fresh.getColumn(col).getSlot(row).addRed();
+                } else {
+                    fresh.getColumn(col).getSlot(row).addYellow();
+                }
+            }
+        }
+        return fresh;
+    }
+}
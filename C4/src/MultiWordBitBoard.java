@@ -0,0 +1,296 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A bitboard for games that Connect4BitBoard can't hold: boards with more cells than fit in one long, and games won
+ * by some other number of tokens in a row than four. ConnectKSearch plays on it.
+ *
+ * The layout is the same as Connect4BitBoard's, (rows + 1) bits per column with an always-empty sentinel bit on top,
+ * but spread over as many longs as the board needs, with bit i of the board in bit (i % 64) of word i / 64. Each
+ * player's tokens have their own words, so a move only sets one bit, and only the lines through the last token are
+ * checked for a win.
+ *
+ * Boards can be up to 32 columns by 32 rows, the size Zobrist has keys for.
+ */
+public class MultiWordBitBoard {
+    private final int columnCount;
+    private final int rowCount;
+    private final int winLength;
+    private final int stride; // bits per column, including the sentinel
+    private final int[] steps; // the bit distance between neighbouring cells: vertical, horizontal and both diagonals
+
+    private final long[] red; // red tokens
+    private final long[] yellow; // yellow tokens
+    private boolean redToMove;
+    private long hash; // Zobrist hash of the tokens and the player to move
+
+    private final int[] heights; // number of tokens in each column
+    private final int[] moveStack; // columns played since the last load, for undo()
+    private int stackSize;
+    private int tokenCount;
+
+    /**
+     * Creates an empty bitboard with the given size.
+     *
+     * @param columnCount the number of columns on the board
+     * @param rowCount the number of rows on the board
+     * @param winLength the number of tokens in a row that wins
+     */
+    public MultiWordBitBoard(int columnCount, int rowCount, int winLength) {
+        if (columnCount > Zobrist.MAX_COLUMNS || rowCount > Zobrist.MAX_ROWS) {
+            throw new IllegalArgumentException("A " + columnCount + "x" + rowCount + " board has no Zobrist keys.");
+        }
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.winLength = winLength;
+        this.stride = rowCount + 1;
+        this.steps = new int[]{1, stride, stride - 1, stride + 1};
+        int words = (columnCount * stride + 63) / 64;
+        this.red = new long[words];
+        this.yellow = new long[words];
+        this.heights = new int[columnCount];
+        this.moveStack = new int[columnCount * rowCount];
+        this.redToMove = true;
+    }
+
+    /**
+     * Creates a copy of another bitboard, so it can be played on independently.
+     *
+     * @param board the bitboard to copy
+     */
+    public MultiWordBitBoard(MultiWordBitBoard board) {
+        this.columnCount = board.columnCount;
+        this.rowCount = board.rowCount;
+        this.winLength = board.winLength;
+        this.stride = board.stride;
+        this.steps = board.steps;
+        this.red = board.red.clone();
+        this.yellow = board.yellow.clone();
+        this.redToMove = board.redToMove;
+        this.hash = board.hash;
+        this.heights = board.heights.clone();
+        this.moveStack = board.moveStack.clone();
+        this.stackSize = board.stackSize;
+        this.tokenCount = board.tokenCount;
+    }
+
+    /**
+     * Copies the tokens of a game onto this bitboard, replacing whatever was here before.
+     *
+     * @param game the game to copy; it must have the same size as this bitboard
+     * @param redToMove whether red is the next player to move
+     */
+    public void load(Connect4Game game, boolean redToMove) {
+        Arrays.fill(red, 0);
+        Arrays.fill(yellow, 0);
+        long hash = redToMove ? Zobrist.RED_TO_MOVE : 0;
+        int tokens = 0;
+        for (int col = 0; col < columnCount; col++) {
+            Connect4Column column = game.getColumn(col);
+            int height = 0;
+            for (int row = rowCount - 1; row >= 0; row--) {
+                Connect4Slot slot = column.getSlot(row);
+                if (!slot.getIsFilled()) break;
+
+                int bit = col * stride + height;
+                long[] words = slot.getIsRed() ? red : yellow;
+                words[bit >>> 6] |= 1L << bit;
+                hash ^= Zobrist.key(slot.getIsRed(), col, height);
+                height++;
+            }
+            heights[col] = height;
+            tokens += height;
+        }
+
+        this.redToMove = redToMove;
+        this.hash = hash;
+        this.tokenCount = tokens;
+        this.stackSize = 0;
+    }
+
+    /**
+     * Checks if a token can be dropped into a column.
+     *
+     * @param col the column to check
+     * @return true if the column has an empty slot, false otherwise
+     */
+    public boolean canPlay(int col) {
+        return heights[col] < rowCount;
+    }
+
+    /**
+     * Drops a token for the player to move into a column. The column must not be full.
+     *
+     * @param col the column to play in
+     */
+    public void play(int col) {
+        int bit = col * stride + heights[col];
+        long[] words = redToMove ? red : yellow;
+        words[bit >>> 6] |= 1L << bit;
+        hash ^= Zobrist.key(redToMove, col, heights[col]) ^ Zobrist.RED_TO_MOVE;
+        heights[col]++;
+        moveStack[stackSize++] = col;
+        tokenCount++;
+        redToMove = !redToMove;
+    }
+
+    /**
+     * Takes back the most recent play().
+     */
+    public void undo() {
+        int col = moveStack[--stackSize];
+        heights[col]--;
+        redToMove = !redToMove;
+        int bit = col * stride + heights[col];
+        long[] words = redToMove ? red : yellow;
+        words[bit >>> 6] &= ~(1L << bit);
+        hash ^= Zobrist.key(redToMove, col, heights[col]) ^ Zobrist.RED_TO_MOVE;
+        tokenCount--;
+    }
+
+    /**
+     * Checks if the last play() made a winning line, by counting the tokens next to it in each direction.
+     *
+     * @return true if the player who is not to move has just connected winLength tokens
+     */
+    public boolean lastMoveWon() {
+        if (stackSize == 0) return false;
+        int col = moveStack[stackSize - 1];
+        int bit = col * stride + heights[col] - 1;
+        long[] words = redToMove ? yellow : red;
+        for (int step : steps) {
+            int length = 1 + run(words, bit, step) + run(words, bit, -step);
+            if (length >= winLength) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts a player's tokens in a row from next to a cell, stepping away from it. The sentinel bits are never set,
+     * so a run stops at the edge of a column instead of wrapping into the next one.
+     */
+    private int run(long[] words, int bit, int step) {
+        int count = 0;
+        for (int b = bit + step; b >= 0 && b < columnCount * stride && count < winLength; b += step) {
+            if ((words[b >>> 6] >>> b & 1) == 0) break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Builds a mask of every line of winLength cells on the board, in every direction.
+     *
+     * @return the lines, each as one long per word of the board
+     */
+    public long[][] lineMasks() {
+        List<long[]> lines = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, -1}, {1, 1}}; // {column step, row step}, matching steps
+        for (int[] direction : directions) {
+            for (int col = 0; col < columnCount; col++) {
+                for (int row = 0; row < rowCount; row++) {
+                    int lastCol = col + (winLength - 1) * direction[0];
+                    int lastRow = row + (winLength - 1) * direction[1];
+                    if (lastCol >= columnCount || lastRow < 0 || lastRow >= rowCount) continue;
+
+                    long[] line = new long[red.length];
+                    for (int k = 0; k < winLength; k++) {
+                        int bit = (col + k * direction[0]) * stride + row + k * direction[1];
+                        line[bit >>> 6] |= 1L << bit;
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+        return lines.toArray(new long[0][]);
+    }
+
+    /**
+     * Checks if every slot on the board is filled.
+     *
+     * @return true if the board is full, false otherwise
+     */
+    public boolean isFull() {
+        return tokenCount == columnCount * rowCount;
+    }
+
+    /**
+     * Returns every token of one color.
+     *
+     * @param red true for the red tokens, false for the yellow tokens
+     * @return the words of the slots holding that color; the caller must not change them
+     */
+    public long[] getTokens(boolean red) {
+        return red ? this.red : yellow;
+    }
+
+    /**
+     * Returns the bit of the top token of a column.
+     *
+     * @param col the column, which must not be empty
+     * @return the index of the bit, counted over all the words
+     */
+    public int getTopBit(int col) {
+        return col * stride + heights[col] - 1;
+    }
+
+    /**
+     * Returns the number of tokens in a column.
+     *
+     * @param col the column to check
+     * @return how many slots of the column are filled
+     */
+    public int getHeight(int col) {
+        return heights[col];
+    }
+
+    /**
+     * @return the Zobrist hash of the position, including the player to move
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return true if red is the next player to move, false if yellow is
+     */
+    public boolean isRedToMove() {
+        return redToMove;
+    }
+
+    /**
+     * @return the number of tokens on the board
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * @return the number of columns on the board
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * @return the number of rows on the board
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the number of tokens in a row that wins
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * @return the number of bits in the board, including the sentinels
+     */
+    public int getBitCount() {
+        return columnCount * stride;
+    }
+}
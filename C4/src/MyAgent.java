@@ -1,5 +1,15 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Chinmay Mangalwedhe and Rohan Sheshadri
@@ -14,7 +24,70 @@ public class MyAgent extends Agent {
     private int lastColumnVisited;
     private final int SIMULATION_DEPTH = 8; // tells the tree how many moves ahead to check
     Random r;
-    private static final int[] COLUMN_PRIORITY = {3, 2, 4, 1, 5, 0, 6}; // check columns in this priority
+    private final int[] columnPriority; // check columns in this priority: from the center outwards
+    private Connect4BitBoard simulationBoard; // bitboard copy of myGame that the search plays on
+    private long[] horizontalWindows; // masks of the four-slot rows scored by evaluateBoard
+    private long[] diagonalWindows; // masks of the three-slot diagonal slices scored by evaluateBoard
+    private IncrementalEvaluator evaluator; // the evaluateBoard score of simulationBoard, kept up to date by the search
+    private LineEvaluator lineEvaluator; // scores every line of four at once, for Evaluation.LINES
+
+    /**
+     * The heuristics the search can score positions with.
+     */
+    public enum Evaluation {
+        /** evaluateBoard: the rows, the columns' lowest empty slots and the three-slot diagonal slices */
+        LEGACY,
+        /** LineEvaluator: open twos and threes on every line of four */
+        LINES
+    }
+
+    private Evaluation heuristic = Evaluation.LEGACY; // how leaves are scored
+    private int[][] moveOrders; // the order to try columns in at each remaining depth
+    private int[][] orderScores; // how promising each column in moveOrders is, to sort them by
+    // dynamic move ordering, reset every move: the last two columns that caused a cutoff with each number of tokens on
+    // the board, and how often (weighted by depth) each side's token in each slot has caused one
+    private int[][] killers;
+    private int[][][] history; // [red to move ? 1 : 0][column][row counted from the bottom]
+    private static final int HISTORY_LIMIT = 1 << 24; // the history is halved before it can overflow the sort scores
+    private TranspositionTable transpositionTable; // shared with the helper searches
+    private int lastTokenCount; // tokens on the board at the last move, to notice when a new game starts
+    private static final int TRANSPOSITION_TABLE_BITS = 16; // 2^16 buckets of two entries, 2 MB
+    static final int WIN_THRESHOLD = 90000; // scores beyond this are wins or losses, never heuristic
+
+    // iterative deepening: each move searches depth 1, 2, 3, ... and keeps the last search that finished
+    private long moveTimeMillis; // time budget per move; 0 means no budget, searching up to SIMULATION_DEPTH
+    private int rootDepth; // the depth of the iteration being searched
+    private long deadline; // System.nanoTime() at which the current iteration is abandoned
+    private boolean searchAborted;
+    private int nodeCount;
+    private int previousBestColumn; // the best column of the last finished iteration, tried first at the root
+    private static final long ABORTED_RESULT = result(-1, 0); // returned up the tree once the deadline has passed
+    private static final int[] ABORTED = {-1, 0}; // returned by a Young Brothers Wait task that was cut off
+    private int searchDepth = SIMULATION_DEPTH; // how deep to search when there is no time budget
+    private OpeningBook openingBook; // answers the first moves of a game without a search; none unless one is set
+    private int endgameThreshold = 20; // positions with at most this many empty slots are solved, not searched
+    private Connect4Solver endgameSolver; // created the first time a game reaches the endgame
+
+    // Lazy SMP: helper searches on other threads search the same position at staggered depths and with different
+    // root move orders, and share what they find through the transposition table. Only this search picks the move.
+    private int searchThreads = 1;
+    private MyAgent[] helpers;
+    private ExecutorService helperPool;
+    private volatile boolean stopRequested; // tells a helper that the main search has finished
+    private int[] rootPriority; // column order at the root; rotated for each helper
+
+    // Young Brothers Wait: a fixed-depth alpha-beta search split into ForkJoinPool tasks. It doesn't use the table, so
+    // it comes back with the same column however many threads run it and however they are scheduled.
+    private ForkJoinPool forkJoinPool; // null unless the agent searches this way
+    private static final int MIN_SPLIT_DEPTH = 4; // nodes with less depth left are searched by one task alone
+
+    // games that don't fit Connect4BitBoard, because the board is bigger than 64 bits or the win length isn't four,
+    // are searched by ConnectKSearch instead, without the book, the endgame solver or the extra threads
+    private ConnectKSearch connectKSearch;
+
+    // what the search did on the last move, and on every move since the agent was created; helpers keep their own
+    private final SearchStatistics moveStatistics;
+    private final SearchStatistics statistics;
 
     /**
      * Constructs a new agent, giving it the game and telling it whether it is Red or Yellow.
@@ -25,6 +98,118 @@ public class MyAgent extends Agent {
     public MyAgent(Connect4Game game, boolean iAmRed) {
         super(game, iAmRed);
         r = new Random();
+        transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_BITS);
+        columnPriority = Connect4BitBoard.centerOutOrder(game.getColumnCount());
+        rootPriority = columnPriority;
+        moveStatistics = new SearchStatistics(game.getColumnCount());
+        statistics = new SearchStatistics(game.getColumnCount());
+    }
+
+    /**
+     * Constructs a helper search for a Lazy SMP agent. It shares the owner's transposition table and tries the
+     * columns at the root in a rotated order, so it explores different parts of the tree first.
+     *
+     * @param owner       The agent whose search this helps.
+     * @param helperIndex Which helper this is, from 1.
+     */
+    private MyAgent(MyAgent owner, int helperIndex) {
+        super(owner.myGame, owner.iAmRed);
+        r = new Random();
+        transpositionTable = owner.transpositionTable;
+        heuristic = owner.heuristic; // the table is shared, so every search must score positions the same way
+        moveTimeMillis = 0; // helpers run until the owner stops them
+        columnPriority = owner.columnPriority;
+        rootPriority = new int[columnPriority.length];
+        for (int i = 0; i < columnPriority.length; i++) {
+            rootPriority[i] = columnPriority[(i + helperIndex) % columnPriority.length];
+        }
+        moveStatistics = new SearchStatistics(columnPriority.length);
+        statistics = new SearchStatistics(columnPriority.length);
+    }
+
+    /**
+     * Constructs a new agent that searches as deep as it can within a time budget on every move, instead of to
+     * SIMULATION_DEPTH.
+     *
+     * @param game           The game the agent will be playing.
+     * @param iAmRed         True if the agent is Red, False if the agent is Yellow.
+     * @param moveTimeMillis The time budget per move in milliseconds, or 0 to search to SIMULATION_DEPTH.
+     */
+    public MyAgent(Connect4Game game, boolean iAmRed, long moveTimeMillis) {
+        this(game, iAmRed);
+        setMoveTime(moveTimeMillis);
+    }
+
+    /**
+     * Sets the time budget per move. With a budget the agent keeps deepening until the budget runs out and plays
+     * the best move of the deepest search that finished; without one it always searches to SIMULATION_DEPTH, which
+     * makes its moves reproducible.
+     *
+     * @param moveTimeMillis The time budget per move in milliseconds, or 0 to search to SIMULATION_DEPTH.
+     */
+    public void setMoveTime(long moveTimeMillis) {
+        this.moveTimeMillis = moveTimeMillis;
+    }
+
+    /**
+     * Sets how deep to search when there is no time budget.
+     *
+     * @param searchDepth The number of moves ahead to check; SIMULATION_DEPTH by default.
+     */
+    public void setSearchDepth(int searchDepth) {
+        this.searchDepth = searchDepth;
+    }
+
+    /**
+     * Sets the opening book the agent looks positions up in before searching them. An agent has no book until it is
+     * given one, so a book file lying around can't change how it plays.
+     *
+     * @param openingBook The book, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Sets when the agent stops searching with the heuristic and plays perfectly with Connect4Solver instead. Solving
+     * is only cheaper than the depth-limited search near the end of the game.
+     *
+     * @param endgameThreshold The number of empty slots at or below which positions are solved, or 0 to never solve.
+     */
+    public void setEndgameThreshold(int endgameThreshold) {
+        this.endgameThreshold = endgameThreshold;
+    }
+
+    /**
+     * Sets the heuristic the search scores positions with, so the two can be played against each other.
+     *
+     * @param evaluation Evaluation.LEGACY (the default) or Evaluation.LINES.
+     */
+    public void setEvaluation(Evaluation evaluation) {
+        this.heuristic = evaluation;
+    }
+
+    /**
+     * Sets how many threads search each move. Beyond the first, each thread runs a helper search of the same
+     * position that fills the shared transposition table, which the main search then finds its answers in. The
+     * timing between threads changes what is in the table, so with more than one thread moves are not reproducible.
+     *
+     * @param searchThreads The number of threads, 1 for a single-threaded search.
+     */
+    public void setSearchThreads(int searchThreads) {
+        this.searchThreads = Math.max(1, searchThreads);
+    }
+
+    /**
+     * Switches the agent to the Young Brothers Wait search, which searches to the fixed search depth on a ForkJoinPool.
+     * Unlike setSearchThreads, its result doesn't depend on timing: it is always the column a serial alpha-beta search
+     * to the same depth, trying columns from the center outwards, would pick. It ignores the time budget.
+     *
+     * @param parallelism The number of threads in the pool, or 0 to go back to the iterative deepening search.
+     */
+    public void setForkJoinParallelism(int parallelism) {
+        if (forkJoinPool != null) forkJoinPool.shutdown();
+        forkJoinPool = parallelism > 0 ? new ForkJoinPool(parallelism) : null;
     }
 
     /**
@@ -43,9 +228,266 @@ public class MyAgent extends Agent {
      * If an invalid move is made, the game engine will announce it and the game will be ended.
      */
     public void move() {
-        Connect4Game simulationGame = new Connect4Game(myGame);
-        int[] res = minimax(simulationGame, SIMULATION_DEPTH, Integer.MAX_VALUE, Integer.MIN_VALUE, true);
-        moveOnColumn(res[0]);
+        long start = System.nanoTime();
+        moveStatistics.clear();
+        moveStatistics.moves = 1;
+        searchAndMove();
+        moveStatistics.elapsedNanos = System.nanoTime() - start;
+        statistics.add(moveStatistics);
+    }
+
+    /**
+     * @return what the search did on the agent's last move; the same object is reused for every move
+     */
+    public SearchStatistics getLastMoveStatistics() {
+        return moveStatistics;
+    }
+
+    /**
+     * @return what the search did on every move since the agent was created. The Young Brothers Wait search only
+     * counts its time and the helper searches aren't counted at all.
+     */
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Finds the move to play, from the book, the endgame solver or a search, and plays it.
+     */
+    private void searchAndMove() {
+        if (myGame.getWinLength() != 4 || !Connect4BitBoard.fits(myGame.getColumnCount(), myGame.getRowCount())) {
+            if (connectKSearch == null) {
+                connectKSearch = new ConnectKSearch(myGame.getColumnCount(), myGame.getRowCount(), myGame.getWinLength());
+            }
+            long nodesBefore = connectKSearch.getNodeCount();
+            moveOnColumn(connectKSearch.bestColumn(myGame, iAmRed, searchDepth, moveTimeMillis));
+            moveStatistics.nodes += connectKSearch.getNodeCount() - nodesBefore;
+            return;
+        }
+        prepareSearch();
+
+        // the table carries over between moves of one game, but a new game starts from scratch
+        if (simulationBoard.getTokenCount() < lastTokenCount) {
+            transpositionTable.clear();
+        }
+        lastTokenCount = simulationBoard.getTokenCount();
+
+        int bookColumn = openingBook == null ? -1 : openingBook.lookup(simulationBoard);
+        if (openingBook != null) moveStatistics.bookProbes++;
+        if (bookColumn >= 0) {
+            moveStatistics.bookHits++;
+            moveOnColumn(bookColumn);
+            return;
+        }
+        transpositionTable.newSearch();
+
+        int emptySlots = simulationBoard.getColumnCount() * simulationBoard.getRowCount() - simulationBoard.getTokenCount();
+        if (emptySlots <= endgameThreshold) {
+            if (endgameSolver == null) {
+                endgameSolver = new Connect4Solver(simulationBoard.getColumnCount(), simulationBoard.getRowCount());
+            }
+            long nodesBefore = endgameSolver.getNodeCount();
+            moveOnColumn(endgameSolver.bestColumn(simulationBoard));
+            moveStatistics.solvedMoves++;
+            moveStatistics.solverNodes += endgameSolver.getNodeCount() - nodesBefore;
+            return;
+        }
+        int maxDepth = moveTimeMillis > 0 ? emptySlots : Math.min(searchDepth, emptySlots);
+        if (forkJoinPool != null) {
+            YoungBrothersTask root = new YoungBrothersTask(new Connect4BitBoard(simulationBoard),
+                    Math.min(searchDepth, emptySlots), Integer.MAX_VALUE, Integer.MIN_VALUE, true, null, 0);
+            moveOnColumn(forkJoinPool.invoke(root)[0]);
+            return;
+        }
+
+        List<Future<?>> helperSearches = startHelpers(maxDepth);
+        int bestColumn = iterativeDeepening(1, maxDepth);
+        stopHelpers(helperSearches);
+
+        moveOnColumn(bestColumn);
+    }
+
+    /**
+     * Shuts down the threads of the helper searches. The agent can still move afterwards; it starts new threads if it
+     * needs them.
+     */
+    public void shutdownHelpers() {
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+            helpers = null;
+        }
+    }
+
+    /**
+     * Forgets everything the agent learned during the current game, as it does by itself when it notices a new game
+     * has started. The next move is then the same as a new agent's would be.
+     */
+    public void newGame() {
+        transpositionTable.clear();
+        lastTokenCount = 0;
+    }
+
+    /**
+     * Scores every column of the current position for this agent, which must be the player to move, instead of just
+     * picking one. Each column is searched with a full window to the search depth, ignoring the move time, the book and
+     * the endgame solver, so the scores can be compared with each other: a column scoring less than the best is a
+     * worse move by that much. Nothing is played on the real game. Used by GameAnalyzer to judge recorded moves.
+     * @param scores filled with each column's score for this agent, or Integer.MIN_VALUE if the column is full
+     */
+    public void scoreColumns(int[] scores) {
+        prepareSearch();
+        if (simulationBoard.getTokenCount() < lastTokenCount) {
+            transpositionTable.clear();
+        }
+        lastTokenCount = simulationBoard.getTokenCount();
+        transpositionTable.newSearch();
+
+        moveStatistics.clear();
+        int emptySlots = simulationBoard.getColumnCount() * simulationBoard.getRowCount() - simulationBoard.getTokenCount();
+        rootDepth = Math.min(searchDepth, emptySlots);
+        deadline = Long.MAX_VALUE;
+        searchAborted = false;
+        nodeCount = 0;
+        for (int col = 0; col < simulationBoard.getColumnCount(); col++) {
+            if (!simulationBoard.canPlay(col)) {
+                scores[col] = Integer.MIN_VALUE;
+                continue;
+            }
+            lastColumnVisited = col;
+            simulationBoard.play(col);
+            if (heuristic == Evaluation.LEGACY) evaluator.played(simulationBoard, col);
+            scores[col] = resultScore(minimax(simulationBoard, rootDepth - 1, Integer.MAX_VALUE, Integer.MIN_VALUE,
+                    false));
+            simulationBoard.undo();
+            if (heuristic == Evaluation.LEGACY) evaluator.undone(simulationBoard, col);
+        }
+        moveStatistics.nodes += nodeCount;
+    }
+
+    /**
+     * Gets the simulation board ready for a new search of the current game. Package-private so Benchmarks can set up
+     * evaluateBoard without a search.
+     */
+    void prepareSearch() {
+        if (simulationBoard == null) {
+            simulationBoard = new Connect4BitBoard(myGame.getColumnCount(), myGame.getRowCount());
+            buildEvaluationWindows(simulationBoard);
+            evaluator = new IncrementalEvaluator(simulationBoard, iAmRed,
+                    (window, mine, theirs) -> findSubsetScore(window, 4, mine, theirs));
+            evaluator.addWindows(horizontalWindows,
+                    (window, mine, theirs) -> (int) (findSubsetScore(window, 4, mine, theirs) * 1.75));
+            evaluator.addWindows(diagonalWindows, (window, mine, theirs) -> findSubsetScore(window, 3, mine, theirs));
+            lineEvaluator = new LineEvaluator(simulationBoard);
+            int cells = myGame.getColumnCount() * myGame.getRowCount();
+            moveOrders = new int[cells + 1][myGame.getColumnCount()];
+            orderScores = new int[cells + 1][myGame.getColumnCount()];
+            killers = new int[cells + 1][2];
+            history = new int[2][myGame.getColumnCount()][myGame.getRowCount()];
+        }
+        simulationBoard.load(myGame, iAmRed); // the only time the search reads the real game
+        evaluator.reset(simulationBoard);
+
+        for (int[] killer : killers) {
+            Arrays.fill(killer, -1);
+        }
+        for (int[][] sideHistory : history) {
+            for (int[] columnHistory : sideHistory) {
+                Arrays.fill(columnHistory, 0);
+            }
+        }
+    }
+
+    /**
+     * Searches depth firstDepth, firstDepth + 1, ... up to maxDepth, until the time budget runs out or a helper is told
+     * to stop.
+     * @param firstDepth the depth of the first iteration
+     * @param maxDepth the depth of the last iteration
+     * @return the best column of the deepest iteration that finished, or -1 if none did
+     */
+    private int iterativeDeepening(int firstDepth, int maxDepth) {
+        long start = System.nanoTime();
+        deadline = start + moveTimeMillis * 1_000_000;
+        searchAborted = false;
+        nodeCount = 0;
+
+        int bestColumn = -1;
+        int finishedDepth = 0;
+        long leavesBefore = moveStatistics.leaves;
+        previousBestColumn = -1;
+        for (int depth = firstDepth; depth <= maxDepth; depth++) {
+            rootDepth = depth;
+            long res = minimax(simulationBoard, depth, Integer.MAX_VALUE, Integer.MIN_VALUE, true);
+            if (searchAborted) break; // keep the last search that finished
+
+            finishedDepth = depth;
+            bestColumn = resultColumn(res);
+            previousBestColumn = bestColumn;
+            // a forced win or loss will not change with a deeper search
+            if (Math.abs(resultScore(res)) > WIN_THRESHOLD) break;
+            // the next iteration takes several times longer than this one, so don't start one that can't finish
+            if (moveTimeMillis > 0 && System.nanoTime() - start > moveTimeMillis * 1_000_000 / 2) break;
+        }
+        moveStatistics.nodes += nodeCount;
+        moveStatistics.searchFinished(nodeCount + moveStatistics.leaves - leavesBefore, finishedDepth);
+        return bestColumn;
+    }
+
+    /**
+     * Starts the helper searches of the current position, if this agent searches with more than one thread. Every
+     * other helper starts one depth ahead, so the helpers are usually working on deeper positions than the main
+     * search is about to reach.
+     * @param maxDepth the deepest iteration the main search will run
+     * @return the running helper searches
+     */
+    private List<Future<?>> startHelpers(int maxDepth) {
+        if (searchThreads <= 1) return Collections.emptyList();
+        List<Future<?>> searches = new ArrayList<>();
+
+        if (helpers == null || helpers.length != searchThreads - 1) {
+            if (helperPool != null) helperPool.shutdownNow();
+            helpers = new MyAgent[searchThreads - 1];
+            for (int i = 0; i < helpers.length; i++) {
+                helpers[i] = new MyAgent(this, i + 1);
+            }
+            helperPool = Executors.newFixedThreadPool(helpers.length, runnable -> {
+                Thread thread = new Thread(runnable, "MyAgent helper");
+                thread.setDaemon(true); // a finished game shouldn't keep the program alive
+                return thread;
+            });
+        }
+
+        for (int i = 0; i < helpers.length; i++) {
+            MyAgent helper = helpers[i];
+            int firstDepth = 1 + (i + 1) % 2;
+            helper.heuristic = heuristic; // in case setEvaluation() was called since the helpers were made
+            helper.stopRequested = false;
+            searches.add(helperPool.submit(() -> {
+                helper.prepareSearch();
+                helper.iterativeDeepening(Math.min(firstDepth, maxDepth), maxDepth);
+            }));
+        }
+        return searches;
+    }
+
+    /**
+     * Stops the helper searches and waits for them, so none is still using the table or the game when the move is
+     * made.
+     * @param searches the running helper searches
+     */
+    private void stopHelpers(List<Future<?>> searches) {
+        if (helpers == null) return;
+
+        for (MyAgent helper : helpers) {
+            helper.stopRequested = true;
+        }
+        try {
+            for (Future<?> search : searches) {
+                search.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("A helper search failed", e);
+        }
     }
 
     /**
@@ -53,33 +495,73 @@ public class MyAgent extends Agent {
      * most optimal move for the player. The code is based off "maximizing" an arbitrary score for our agent and
      * "minimizing" the score for the opponent. The scores are determined based off a number of patterns found in
      * winning moves all throughout Connect Four (diagonals, four in a row, four in a column, etc).
-     * @param simulationGame a copy of the current game board to prevent cross-over from the simulation to the real game
+     * <p>
+     * Results are kept in the transposition table, so a position reached again through a different order of moves
+     * (or on a later turn) is answered from the table when it was searched at least as deep, and otherwise has its
+     * best column from last time tried first.
+     * @param simulationBoard a bitboard copy of the current game to prevent cross-over from the simulation to the real game
      * @param depth tells the method how many moves further to look at
      * @param beta the "beta" value used for pruning the tree
      * @param alpha the "alpha" value used for pruning the tree
      * @param isMaximizingPlayer tells whether the current player should be maximized or minimized (opponent or player)
-     * @return an array of two integers: one of the column with the optimal move and the score given for said move
+     * @return the column with the optimal move and the score given for said move, packed by result()
      */
-    private int[] minimax(Connect4Game simulationGame, int depth, int beta, int alpha, boolean isMaximizingPlayer) {
+    private long minimax(Connect4BitBoard simulationBoard, int depth, int beta, int alpha, boolean isMaximizingPlayer) {
         // base case - stops when a leaf is met, when the board is full, or someone has won
-        if (depth <= 0 || simulationGame.boardFull() || simulationGame.gameWon() != 'N') {
-            return new int[]{lastColumnVisited, evaluateBoard(simulationGame, depth)};
+        if (depth <= 0 || simulationBoard.isFull() || simulationBoard.lastMoveWon()) {
+            moveStatistics.leaves++;
+            return result(lastColumnVisited, evaluateLeaf(simulationBoard, depth));
+        }
+
+        // depth 1 always finishes so there is a move to play; after that, look at the clock every 1024 nodes
+        if ((++nodeCount & 1023) == 0
+                && (stopRequested || moveTimeMillis > 0 && rootDepth > 1 && System.nanoTime() > deadline)) {
+            searchAborted = true;
+        }
+        if (searchAborted) return ABORTED_RESULT;
+
+        long hash = simulationBoard.getHash();
+        int tableMove = -1;
+        long entry = transpositionTable.probe(hash);
+        moveStatistics.tableProbes++;
+        if (entry != TranspositionTable.MISS) {
+            moveStatistics.tableHits++;
+            tableMove = TranspositionTable.bestMove(entry);
+
+            // the root has to come back with a column of its own, so only inner nodes take the table's word for it
+            if (depth < rootDepth && TranspositionTable.depth(entry) >= depth) {
+                int tableScore = fromTableScore(TranspositionTable.score(entry), depth);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT) return result(tableMove, tableScore);
+                if (bound == TranspositionTable.LOWER) alpha = Math.max(alpha, tableScore);
+                if (bound == TranspositionTable.UPPER) beta = Math.min(beta, tableScore);
+                if (beta <= alpha) return result(tableMove, tableScore);
+            }
         }
+        int originalAlpha = alpha, originalBeta = beta; // after the table narrowed them, so bounds are stored correctly
+        if (depth == rootDepth && previousBestColumn >= 0) {
+            tableMove = previousBestColumn; // the last iteration's answer is the most likely best column
+        }
+        int[] moveOrder = orderMoves(simulationBoard, depth, tableMove);
+        int moveIndex = 0; // how many moves were searched before this one, for the cutoff statistics
 
         // maximizes the player
         int optimalColumn = Integer.MIN_VALUE;
+        int optimalEval;
         if (isMaximizingPlayer) {
             int maxEval = Integer.MIN_VALUE;
 
-            for (int col : COLUMN_PRIORITY) {
-                if (simulationGame.getColumn(col).getIsFull()) continue;
+            for (int col : moveOrder) {
+                if (!simulationBoard.canPlay(col)) continue;
 
                 // places a token at a spot and then calculates the score determined by the heuristic
                 lastColumnVisited = col;
-                int tempInsertRow = getLowestEmptyIndex(simulationGame.getColumn(col));
-                placeTheoreticalToken(simulationGame, col, tempInsertRow, iAmRed);
-                int evaluation = minimax(simulationGame, depth - 1, beta, alpha, false)[1];
-                simulationGame.getColumn(col).getSlot(tempInsertRow).clear();
+                simulationBoard.play(col);
+                if (heuristic == Evaluation.LEGACY) evaluator.played(simulationBoard, col);
+                int evaluation = resultScore(minimax(simulationBoard, depth - 1, beta, alpha, false));
+                simulationBoard.undo();
+                if (heuristic == Evaluation.LEGACY) evaluator.undone(simulationBoard, col);
+                if (searchAborted) return ABORTED_RESULT;
 
                 // if greater than current evaluation, then the optimal move would be in the new column
                 alpha = Math.max(evaluation, alpha);
@@ -90,23 +572,29 @@ public class MyAgent extends Agent {
 
                 // alpha-beta pruning: this will occur when it is found it is not necessary to search the other
                 // children in this tree as there is a better option no matter what the children are
-                if (beta <= alpha) break;
+                if (beta <= alpha) {
+                    recordCutoff(simulationBoard, col, depth);
+                    moveStatistics.cutoffsByMove[moveIndex]++;
+                    break;
+                }
+                moveIndex++;
             }
 
-            // returns the ultimate optimal move with column (needed for placement) and score for recursion
-            return new int[]{optimalColumn, maxEval};
+            optimalEval = maxEval;
         } else {
             // this minimizes the opponent's move and chance to win
             int minEval = Integer.MAX_VALUE;
 
-            for (int col : COLUMN_PRIORITY) {
-                if (simulationGame.getColumn(col).getIsFull()) continue;
+            for (int col : moveOrder) {
+                if (!simulationBoard.canPlay(col)) continue;
 
                 lastColumnVisited = col;
-                int tempInsertRow = getLowestEmptyIndex(simulationGame.getColumn(col));
-                placeTheoreticalToken(simulationGame, col, tempInsertRow, !iAmRed);
-                int eval = minimax(simulationGame, depth - 1, beta, alpha, true)[1];
-                simulationGame.getColumn(col).getSlot(tempInsertRow).clear();
+                simulationBoard.play(col);
+                if (heuristic == Evaluation.LEGACY) evaluator.played(simulationBoard, col);
+                int eval = resultScore(minimax(simulationBoard, depth - 1, beta, alpha, true));
+                simulationBoard.undo();
+                if (heuristic == Evaluation.LEGACY) evaluator.undone(simulationBoard, col);
+                if (searchAborted) return ABORTED_RESULT;
                 beta = Math.min(eval, beta);
 
                 if (eval < minEval) {
@@ -114,182 +602,462 @@ public class MyAgent extends Agent {
                     minEval = eval;
                 }
 
-                if (beta <= alpha) break;
+                if (beta <= alpha) {
+                    recordCutoff(simulationBoard, col, depth);
+                    moveStatistics.cutoffsByMove[moveIndex]++;
+                    break;
+                }
+                moveIndex++;
             }
 
-            return new int[]{optimalColumn, minEval};
+            optimalEval = minEval;
         }
+
+        int bound = optimalEval <= originalAlpha ? TranspositionTable.UPPER
+                : optimalEval >= originalBeta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        transpositionTable.store(hash, depth, bound, toTableScore(optimalEval, depth), optimalColumn);
+
+        // returns the ultimate optimal move with column (needed for placement) and score for recursion
+        return result(optimalColumn, optimalEval);
     }
 
     /**
-     * For the simulation, multiple tokens must be "dropped" on the board for testing purposes. As a result, this method
-     * drops a token for testing purposes and is later analyzed by the heuristic for a score to come up
-     * @param simulationGame a copy of the board to prevent crossover with the real game
-     * @param col the column to "drop" the token onto the board
-     * @param row the row to "drop" the token onto the board
-     * @param red is the color red? if so, make token red, otherwise yellow.
+     * Packs a column and a score into the long that minimax returns, so the search doesn't allocate a result at every
+     * node.
+     * @param column the column of the move
+     * @param score the score of the move
+     * @return the column in the high 32 bits and the score in the low 32 bits
      */
-    private void placeTheoreticalToken(Connect4Game simulationGame, int col, int row, boolean red) {
-        if (red)
-            simulationGame.getColumn(col).getSlot(row).addRed();
-        else
-            simulationGame.getColumn(col).getSlot(row).addYellow();
+    private static long result(int column, int score) {
+        return (long) column << 32 | (score & 0xFFFFFFFFL);
     }
 
     /**
-     * Evaluates the board and comes up with the score. The method has it weighted where some positions are more
-     * important than others. For example, for three of the same color tokens in a row is worth 1000 "points" while two in
-     * the same row would be worth 500 "points." This is to ensure that moves that can the user to win will be favored
-     * than a move that is not there yet.
-     *
-     * @param simulationGame a copy of the board to prevent crossover with the real game
-     * @param depth the depth from the minimax method - how many moves further to check
-     * @return the "score" given by the heuristic for minimax to interpret
+     * @param result a result packed by result()
+     * @return the column of the result
      */
-    private int evaluateBoard(Connect4Game simulationGame, int depth) {
-        int score = 0;
-        char[][] board = simulationGame.getBoardMatrix();
+    private static int resultColumn(long result) {
+        return (int) (result >> 32);
+    }
 
-        if (simulationGame.gameWon() == (iAmRed ? 'R' : 'Y')) {
-            return 100000 + depth;
+    /**
+     * @param result a result packed by result()
+     * @return the score of the result
+     */
+    private static int resultScore(long result) {
+        return (int) result;
+    }
+
+    /**
+     * One node of the Young Brothers Wait search. The eldest child is searched first, by this task, to get a bound;
+     * then the younger brothers are forked with that bound and all search on their own copies of the position. When a
+     * brother gets a cutoff, the brothers after it are aborted, but the ones before it are left to finish, and the
+     * results are combined in column order as the serial search would. That way every result that is used comes from
+     * a search with the same window every time, and the answer doesn't depend on which task finished first. Nodes
+     * with less than MIN_SPLIT_DEPTH left are searched serially, with play and undo on the task's own board.
+     */
+    @SuppressWarnings("serial") // ForkJoinTask is Serializable, but these tasks never leave the pool
+    private final class YoungBrothersTask extends RecursiveTask<int[]> {
+        private final Connect4BitBoard board; // this task's own copy of the position
+        private final int depth, beta, alpha;
+        private final boolean isMaximizingPlayer;
+        private final YoungBrothersTask parent;
+        private final int index; // which child of the parent this is, in the order they are tried
+        private final AtomicInteger cutoffIndex = new AtomicInteger(Integer.MAX_VALUE); // first child that cut off
+        private int nodeCount;
+
+        YoungBrothersTask(Connect4BitBoard board, int depth, int beta, int alpha, boolean isMaximizingPlayer,
+                          YoungBrothersTask parent, int index) {
+            this.board = board;
+            this.depth = depth;
+            this.beta = beta;
+            this.alpha = alpha;
+            this.isMaximizingPlayer = isMaximizingPlayer;
+            this.parent = parent;
+            this.index = index;
         }
 
-        if (simulationGame.gameWon() == (!iAmRed ? 'Y' : 'R')) {
-            return -100000 - depth;
+        /**
+         * @return true if a brother of this task or of one of its ancestors, tried before it, got a cutoff
+         */
+        private boolean aborted() {
+            for (YoungBrothersTask task = this; task.parent != null; task = task.parent) {
+                if (task.index > task.parent.cutoffIndex.get()) return true;
+            }
+            return false;
         }
 
-        // checks vertically to see if an open slot may exist
-        ArrayList<Integer> emptyColumns = getEmptyColumns(simulationGame);
+        /**
+         * @return an array of the optimal column and its score, or ABORTED
+         */
+        private int[] searchNode() {
+            if (depth <= 0 || board.isFull() || board.lastMoveWon()) {
+                return new int[]{-1, evaluateCopy(board, depth)};
+            }
+            if (depth < MIN_SPLIT_DEPTH) {
+                int[] result = search(depth, beta, alpha, isMaximizingPlayer);
+                return aborted() ? ABORTED : result;
+            }
 
-        for (int emptyColumn : emptyColumns) {
-            int lowestEmptyRow = getLowestEmptyIndex(simulationGame.getColumn(emptyColumn));
-            if (lowestEmptyRow >= simulationGame.getRowCount() - 3) continue;
+            int beta = this.beta, alpha = this.alpha;
+            int optimalColumn = -1;
+            int optimalEval = isMaximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            List<Integer> youngerColumns = new ArrayList<>();
+            for (int col : columnPriority) {
+                if (!board.canPlay(col)) continue;
+                if (optimalColumn >= 0) {
+                    youngerColumns.add(col);
+                    continue;
+                }
 
-            score += findSubsetScore(new char[]{board[lowestEmptyRow][emptyColumn],
-                    board[lowestEmptyRow + 1][emptyColumn], board[lowestEmptyRow + 2][emptyColumn],
-                    board[lowestEmptyRow + 3][emptyColumn]});
-        }
+                // the eldest brother
+                board.play(col);
+                int eval = new YoungBrothersTask(board, depth - 1, beta, alpha, !isMaximizingPlayer, this, 0)
+                        .compute()[1];
+                board.undo();
+                if (aborted()) return ABORTED;
 
-        // checks horizontally to see if an open slot may exist
-        for (int i = simulationGame.getRowCount() - 1; i >= 0; i--) {
-            for (int j = 0; j < simulationGame.getColumnCount() - 3; j++) {
-                char[] row = board[i];
-                score += (int) (findSubsetScore(new char[]{row[j], row[j + 1], row[j + 2], row[j + 3]}) * 1.75);
+                optimalColumn = col;
+                optimalEval = eval;
+                if (isMaximizingPlayer) alpha = Math.max(alpha, eval);
+                else beta = Math.min(beta, eval);
+                if (beta <= alpha) return new int[]{optimalColumn, optimalEval};
             }
-        }
 
-        // following two loops check diagonals (forwards and backwards)
-        for (int i = 1; i < simulationGame.getColumnCount(); i++) {
-            for (int j = simulationGame.getRowCount() - i; j >= 2; j--) {
-                score += findSubsetScore(new char[]{board[j][i], board[j - 1][i + 1], board[j - 2][i + 2]});
+            List<YoungBrothersTask> brothers = new ArrayList<>();
+            for (int col : youngerColumns) {
+                Connect4BitBoard copy = new Connect4BitBoard(board);
+                copy.play(col);
+                YoungBrothersTask brother = new YoungBrothersTask(copy, depth - 1, beta, alpha, !isMaximizingPlayer,
+                        this, brothers.size() + 1);
+                brother.fork();
+                brothers.add(brother);
             }
 
-            for (int j = 0; j < simulationGame.getRowCount() - i - 1; j++) {
-                score += findSubsetScore(new char[]{board[j][i], board[j+1][i+1], board[j+2][i+2]});
+            for (int i = 0; i < brothers.size(); i++) {
+                int eval = brothers.get(i).join()[1];
+                if (isMaximizingPlayer ? eval > optimalEval : eval < optimalEval) {
+                    optimalEval = eval;
+                    optimalColumn = youngerColumns.get(i);
+                }
+                if (isMaximizingPlayer ? eval >= beta : eval <= alpha) {
+                    cutoffIndex.accumulateAndGet(i + 1, Math::min);
+                    for (int j = i + 1; j < brothers.size(); j++) {
+                        brothers.get(j).join(); // they stop at their next abort check
+                    }
+                    break;
+                }
             }
+            if (aborted()) return ABORTED;
+            return new int[]{optimalColumn, optimalEval};
         }
 
-        for (int i = 2; i < simulationGame.getRowCount(); i++) {
-            for (int j = 0; j < i - 1; j++) {
-                score += findSubsetScore(new char[]{board[i][j], board[i - 1][j + 1], board[i - 2][j + 2]});
+        /**
+         * Searches this node and, if it is a younger brother that got a cutoff, aborts the brothers after it straight
+         * away instead of when the parent gets round to joining it.
+         */
+        @Override
+        protected int[] compute() {
+            int[] result = searchNode();
+            if (index > 0 && result != ABORTED && (isMaximizingPlayer ? result[1] <= alpha : result[1] >= beta)) {
+                parent.cutoffIndex.accumulateAndGet(index, Math::min);
             }
+            return result;
+        }
 
-            for (int j = simulationGame.getRowCount() - 1; j >= 2 + simulationGame.getRowCount() - i; j--) {
-                score += findSubsetScore(new char[]{board[j][i], board[j - 1][i - 1], board[j - 2][i - 2]});
+        /**
+         * A serial alpha-beta search on the task's board, the same as minimax without the table.
+         * @param depth how many moves further to look at
+         * @param beta the "beta" value used for pruning the tree
+         * @param alpha the "alpha" value used for pruning the tree
+         * @param isMaximizingPlayer whether this agent is the player to move
+         * @return an array of the optimal column and its score
+         */
+        private int[] search(int depth, int beta, int alpha, boolean isMaximizingPlayer) {
+            if (depth <= 0 || board.isFull() || board.lastMoveWon()) {
+                return new int[]{-1, evaluateCopy(board, depth)};
             }
+            if ((++nodeCount & 1023) == 0 && aborted()) return ABORTED;
+
+            int optimalColumn = -1;
+            int optimalEval = isMaximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            for (int col : columnPriority) {
+                if (!board.canPlay(col)) continue;
+
+                board.play(col);
+                int eval = search(depth - 1, beta, alpha, !isMaximizingPlayer)[1];
+                board.undo();
+
+                if (isMaximizingPlayer ? eval > optimalEval : eval < optimalEval) {
+                    optimalEval = eval;
+                    optimalColumn = col;
+                }
+                if (isMaximizingPlayer) alpha = Math.max(alpha, eval);
+                else beta = Math.min(beta, eval);
+                if (beta <= alpha) break;
+            }
+            return new int[]{optimalColumn, optimalEval};
         }
+    }
 
-        return score;
+    /**
+     * Fills in the order to try the columns at this depth: the table's best column first, then this ply's killer
+     * columns, then the rest by their history, with the center-out priority breaking ties.
+     * @param simulationBoard the position the columns are played from
+     * @param depth the remaining depth, which picks the array to fill
+     * @param tableMove the best column from the transposition table, or -1
+     * @return the columns in the order to try them
+     */
+    private int[] orderMoves(Connect4BitBoard simulationBoard, int depth, int tableMove) {
+        int[] order = moveOrders[depth];
+        int[] scores = orderScores[depth];
+        int[] killer = killers[simulationBoard.getTokenCount()];
+        int[][] sideHistory = history[simulationBoard.isRedToMove() ? 1 : 0];
+
+        int n = 0;
+        for (int col : depth == rootDepth ? rootPriority : columnPriority) {
+            int score;
+            if (col == tableMove) score = Integer.MAX_VALUE;
+            else if (col == killer[0]) score = Integer.MAX_VALUE - 1;
+            else if (col == killer[1]) score = Integer.MAX_VALUE - 2;
+            else if (simulationBoard.canPlay(col)) score = sideHistory[col][simulationBoard.getHeight(col)];
+            else score = -1; // full; skipped by the search anyway
+
+            // insertion sort, keeping the priority order between columns with the same score
+            int i = n++;
+            while (i > 0 && scores[i - 1] < score) {
+                order[i] = order[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            order[i] = col;
+            scores[i] = score;
+        }
+        return order;
     }
 
     /**
-     * Returns how many empty columns there are on the simulation board
-     * @param simulationGame a copy of the board to prevent crossover with the real game
-     * @return a list of indices pertaining to columns that are not full
+     * Remembers a column that caused a cutoff, so it is tried early in the rest of the search: first at the same ply,
+     * as a killer, and then anywhere the same side can drop into the same slot, by its history.
+     * @param simulationBoard the position the column was played from
+     * @param col the column that caused the cutoff
+     * @param depth the remaining depth, since cutoffs near the root save the most work
      */
-    private ArrayList<Integer> getEmptyColumns(Connect4Game simulationGame) {
-        ArrayList<Integer> list = new ArrayList<>();
+    private void recordCutoff(Connect4BitBoard simulationBoard, int col, int depth) {
+        int[] killer = killers[simulationBoard.getTokenCount()];
+        if (killer[0] != col) {
+            killer[1] = killer[0];
+            killer[0] = col;
+        }
 
-        for (int i = 0; i < simulationGame.getColumnCount(); i++) {
-            if (!simulationGame.getColumn(i).getIsFull())
-                list.add(i);
+        int[][] sideHistory = history[simulationBoard.isRedToMove() ? 1 : 0];
+        sideHistory[col][simulationBoard.getHeight(col)] += depth * depth;
+        if (sideHistory[col][simulationBoard.getHeight(col)] > HISTORY_LIMIT) {
+            for (int[][] halvedSide : history) {
+                for (int[] columnHistory : halvedSide) {
+                    for (int row = 0; row < columnHistory.length; row++) {
+                        columnHistory[row] /= 2;
+                    }
+                }
+            }
         }
+    }
 
-        return list;
+    /**
+     * Win scores count how much depth was left when the win was found, which depends on where the search started.
+     * The table stores them relative to the position instead, so they can be reused at a different depth.
+     * @param score a search score at a node with the given remaining depth
+     * @param depth the remaining depth at the node
+     * @return the score to store in the table
+     */
+    private static int toTableScore(int score, int depth) {
+        if (score > WIN_THRESHOLD) return score - depth;
+        if (score < -WIN_THRESHOLD) return score + depth;
+        return score;
     }
 
     /**
-     * Finds a "score" for a subset of the board. This is helpful as a method can be passed in rather than repeatedly
-     * checking the score for different patterns.
-     * @param subset a subset of the board.
-     * @return a score pertaining to the subset.
+     * Turns a score stored by toTableScore back into a search score.
+     * @param score the score from the table
+     * @param depth the remaining depth at the node
+     * @return the search score
      */
-    private int findSubsetScore(char[] subset) {
-        int blankSpots = blankSpotsCount(subset);
+    private static int fromTableScore(int score, int depth) {
+        if (score > WIN_THRESHOLD) return score + depth;
+        if (score < -WIN_THRESHOLD) return score - depth;
+        return score;
+    }
 
-        if (blankSpots == 4) return 0;
+    /**
+     * Evaluates the board and comes up with the score. The method has it weighted where some positions are more
+     * important than others. For example, for three of the same color tokens in a row is worth 1000 "points" while two in
+     * the same row would be worth 500 "points." This is to ensure that moves that can the user to win will be favored
+     * than a move that is not there yet. Package-private so Benchmarks can time it.
+     *
+     * @param simulationBoard a bitboard copy of the game to prevent crossover with the real game
+     * @param depth the depth from the minimax method - how many moves further to check
+     * @return the "score" given by the heuristic for minimax to interpret
+     */
+    int evaluateBoard(Connect4BitBoard simulationBoard, int depth) {
+        int score = 0;
 
-        int selfSpots = selfSpotsCount(subset);
-        int enemySpots = enemySpotsCount(subset);
+        // only the player who just moved can have connected four
+        if (simulationBoard.lastMoveWon()) {
+            boolean redWon = !simulationBoard.isRedToMove();
+            return redWon == iAmRed ? 100000 + depth : -100000 - depth;
+        }
 
-        if (selfSpots == 3 && blankSpots == 1) return 1000;
-        if (enemySpots == 3 && blankSpots == 1) return -1000;
+        long mine = simulationBoard.getTokens(iAmRed);
+        long theirs = simulationBoard.getTokens(!iAmRed);
+        int rowCount = simulationBoard.getRowCount();
 
-        if (selfSpots == 2 && enemySpots == 0) return 500;
-        if (enemySpots == 2 && selfSpots == 0) return -500;
+        // checks vertically to see if an open slot may exist
+        for (int emptyColumn = 0; emptyColumn < simulationBoard.getColumnCount(); emptyColumn++) {
+            if (!simulationBoard.canPlay(emptyColumn)) continue;
 
-        // if no concerning pattern is found, it's neutral
-        return 0;
+            int lowestEmptyRow = rowCount - 1 - simulationBoard.getHeight(emptyColumn);
+            if (lowestEmptyRow >= rowCount - 3) continue;
+
+            long window = simulationBoard.getCellMask(lowestEmptyRow, emptyColumn)
+                    | simulationBoard.getCellMask(lowestEmptyRow + 1, emptyColumn)
+                    | simulationBoard.getCellMask(lowestEmptyRow + 2, emptyColumn)
+                    | simulationBoard.getCellMask(lowestEmptyRow + 3, emptyColumn);
+            score += findSubsetScore(window, 4, mine, theirs);
+        }
+
+        // checks horizontally to see if an open slot may exist
+        for (long window : horizontalWindows) {
+            score += (int) (findSubsetScore(window, 4, mine, theirs) * 1.75);
+        }
+
+        // checks the diagonal slices
+        for (long window : diagonalWindows) {
+            score += findSubsetScore(window, 3, mine, theirs);
+        }
+
+        return score;
     }
 
     /**
-     * Counts the amount of blank spots in a certain subset
-     * @param ary a subset of the board in a character array
-     * @return the amount of blank spots (denoted by 'b') in ary
+     * Scores a leaf of minimax with the chosen evaluation. The legacy heuristic scores the same as evaluateBoard, but
+     * comes from the incremental evaluator.
+     *
+     * @param simulationBoard the board the search is playing on
+     * @param depth the depth from the minimax method - how many moves further to check
+     * @return the "score" given by the heuristic for minimax to interpret
      */
-    private int blankSpotsCount(char[] ary) {
-        int cnt = 0;
-
-        for (int i = 0; i < ary.length; i++) {
-            if (ary[i] == 'B') {
-                cnt++;
-            }
+    private int evaluateLeaf(Connect4BitBoard simulationBoard, int depth) {
+        if (simulationBoard.lastMoveWon()) return evaluateBoard(simulationBoard, depth); // a win doesn't look at windows
+        if (heuristic == Evaluation.LINES) {
+            return lineEvaluator.evaluate(simulationBoard.getTokens(iAmRed), simulationBoard.getTokens(!iAmRed));
         }
+        return evaluator.getScore();
+    }
 
-        return cnt;
+    /**
+     * Scores a board that the incremental evaluator isn't following, such as a fork/join task's copy.
+     *
+     * @param board the board to score
+     * @param depth the depth from the minimax method - how many moves further to check
+     * @return the "score" given by the heuristic for minimax to interpret
+     */
+    private int evaluateCopy(Connect4BitBoard board, int depth) {
+        if (heuristic == Evaluation.LINES && !board.lastMoveWon()) {
+            return lineEvaluator.evaluate(board.getTokens(iAmRed), board.getTokens(!iAmRed));
+        }
+        return evaluateBoard(board, depth);
     }
 
     /**
-     * Counts the amount of self (player) spots in a certain subset
-     * @param ary a subset of the board
-     * @return the amount of blank spots (denoted by the color) in ary
+     * Builds the masks of the horizontal rows and diagonal slices that evaluateBoard scores. These never change for a
+     * board size, so they are found once rather than re-reading the board at every leaf.
+     *
+     * @param simulationBoard a bitboard with the size of the real game
      */
-    private int selfSpotsCount(char[] ary) {
-        int cnt = 0;
+    private void buildEvaluationWindows(Connect4BitBoard simulationBoard) {
+        int rowCount = simulationBoard.getRowCount();
+        int columnCount = simulationBoard.getColumnCount();
+        ArrayList<Long> horizontal = new ArrayList<>();
+        ArrayList<Long> diagonal = new ArrayList<>();
 
-        for (int i = 0; i < ary.length; i++) {
-            if (ary[i] == (iAmRed ? 'R' : 'Y')) {
-                cnt++;
+        for (int i = rowCount - 1; i >= 0; i--) {
+            for (int j = 0; j < columnCount - 3; j++) {
+                horizontal.add(simulationBoard.getCellMask(i, j) | simulationBoard.getCellMask(i, j + 1)
+                        | simulationBoard.getCellMask(i, j + 2) | simulationBoard.getCellMask(i, j + 3));
             }
         }
 
-        return cnt;
+        // following two loops find diagonals (forwards and backwards); on boards other than 7x6 some of the slices
+        // they walk leave the board, and those are skipped
+        for (int i = 1; i < columnCount; i++) {
+            for (int j = rowCount - i; j >= 2; j--) {
+                addDiagonal(diagonal, simulationBoard, j, i, -1, 1);
+            }
+
+            for (int j = 0; j < rowCount - i - 1; j++) {
+                addDiagonal(diagonal, simulationBoard, j, i, 1, 1);
+            }
+        }
+
+        for (int i = 2; i < rowCount; i++) {
+            for (int j = 0; j < i - 1; j++) {
+                addDiagonal(diagonal, simulationBoard, i, j, -1, 1);
+            }
+
+            for (int j = rowCount - 1; j >= 2 + rowCount - i; j--) {
+                addDiagonal(diagonal, simulationBoard, j, i, -1, -1);
+            }
+        }
+
+        horizontalWindows = horizontal.stream().mapToLong(Long::longValue).toArray();
+        diagonalWindows = diagonal.stream().mapToLong(Long::longValue).toArray();
     }
 
     /**
-     * Counts the amount of enemy (opponent) spots in a certain subset
-     * @param ary a subset of the board
-     * @return the amount of blank spots (denoted by the color) in ary
+     * Adds the mask of a three-slot diagonal slice, if all three slots are on the board.
+     *
+     * @param diagonal the list of slices
+     * @param simulationBoard a bitboard with the size of the real game
+     * @param row the row of the first slot
+     * @param col the column of the first slot
+     * @param rowStep the row step to the next slot
+     * @param colStep the column step to the next slot
      */
-    private int enemySpotsCount(char[] ary) {
-        int cnt = 0;
-        for (int i = 0; i < ary.length; i++) {
-            if (ary[i] == (iAmRed ? 'Y' : 'R')) {
-                cnt++;
-            }
+    private void addDiagonal(ArrayList<Long> diagonal, Connect4BitBoard simulationBoard, int row, int col,
+                             int rowStep, int colStep) {
+        long window = 0;
+        for (int k = 0; k < 3; k++) {
+            int r = row + k * rowStep, c = col + k * colStep;
+            if (r < 0 || r >= simulationBoard.getRowCount() || c < 0 || c >= simulationBoard.getColumnCount()) return;
+            window |= simulationBoard.getCellMask(r, c);
         }
+        diagonal.add(window);
+    }
+
+    /**
+     * Finds a "score" for a subset of the board. This is helpful as a method can be passed in rather than repeatedly
+     * checking the score for different patterns.
+     * @param subset the mask of the slots in the subset.
+     * @param size how many slots are in the subset.
+     * @param mine the agent's tokens.
+     * @param theirs the opponent's tokens.
+     * @return a score pertaining to the subset.
+     */
+    private int findSubsetScore(long subset, int size, long mine, long theirs) {
+        int selfSpots = Long.bitCount(subset & mine);
+        int enemySpots = Long.bitCount(subset & theirs);
+        int blankSpots = size - selfSpots - enemySpots;
 
-        return cnt;
+        if (blankSpots == 4) return 0;
+
+        if (selfSpots == 3 && blankSpots == 1) return 1000;
+        if (enemySpots == 3 && blankSpots == 1) return -1000;
+
+        if (selfSpots == 2 && enemySpots == 0) return 500;
+        if (enemySpots == 2 && selfSpots == 0) return -500;
+
+        // if no concerning pattern is found, it's neutral
+        return 0;
     }
 
     /**
@@ -322,13 +1090,16 @@ public class MyAgent extends Agent {
      * full.
      */
     public int getLowestEmptyIndex(Connect4Column column) {
-        int lowestEmptySlot = -1;
-        for (int i = 0; i < column.getRowCount(); i++) {
-            if (!column.getSlot(i).getIsFilled()) {
-                lowestEmptySlot = i;
-            }
-        }
-        return lowestEmptySlot;
+        return column.getTopEmptyIndex();
+    }
+
+    /**
+     * Reseeds the agent's random number generator.
+     *
+     * @param seed the new seed
+     */
+    public void reseed(long seed) {
+        r.setSeed(seed);
     }
 
     /**
@@ -0,0 +1,131 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A book of the best column in opening positions, written by BookGenerator and read by MyAgent.
+ *
+ * The file is a 16-byte header (magic number, column count, row count, entry count), then the
+ * position keys as sorted longs, then one byte per key with its best column. A position and its
+ * mirror image share one entry, under the smaller of the two keys. The file is memory-mapped and
+ * searched in place, so opening a book costs nothing however large it is, and one book can be
+ * shared by every agent on every thread.
+ */
+public class OpeningBook {
+    public static final String DEFAULT_FILE = "opening.book"; // where BookGenerator writes a book unless told otherwise
+    private static final int MAGIC = 0x4334424B; // "C4BK"
+    private static final int HEADER_BYTES = 16;
+
+    private final int columnCount;
+    private final int rowCount;
+    private final int size;
+    private final LongBuffer keys;
+    private final ByteBuffer moves;
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an opening book.");
+        }
+        columnCount = buffer.getInt(4);
+        rowCount = buffer.getInt(8);
+        size = buffer.getInt(12);
+
+        keys = buffer.position(HEADER_BYTES).slice().asLongBuffer();
+        moves = buffer.position(HEADER_BYTES + size * 8).slice();
+    }
+
+    /**
+     * Maps a book file into memory.
+     *
+     * @param file the book to open
+     * @return the book
+     * @throws IOException if the file can't be read or isn't a book
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Looks up the best column for the player to move.
+     *
+     * @param board the position
+     * @return the column to play, or -1 if the position isn't in the book
+     */
+    public int lookup(Connect4BitBoard board) {
+        if (board.getColumnCount() != columnCount || board.getRowCount() != rowCount) return -1;
+
+        long key = board.getPositionKey();
+        long mirrored = board.mirrorKey(key);
+        boolean flip = mirrored < key;
+
+        int index = find(flip ? mirrored : key);
+        if (index < 0) return -1;
+        int col = moves.get(index);
+        return flip ? columnCount - 1 - col : col;
+    }
+
+    /**
+     * @return the number of positions in the book
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Binary searches the keys.
+     *
+     * @param key the key to find
+     * @return the index of the key, or -1 if it isn't there
+     */
+    private int find(long key) {
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a book file.
+     *
+     * @param file the file to write
+     * @param columnCount the number of columns on the board
+     * @param rowCount the number of rows on the board
+     * @param keys the keys of the positions, each the smaller of a position's key and its mirror's key
+     * @param moves the best column of each position, for the position the key belongs to
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Path file, int columnCount, int rowCount, long[] keys, byte[] moves) throws IOException {
+        // sort the entries by key, carrying each move along with its key
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(columnCount);
+            out.writeInt(rowCount);
+            out.writeInt(keys.length);
+            for (int i : order) out.writeLong(keys[i]);
+            for (int i : order) out.writeByte(moves[i]);
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts every position reachable from a start position in exactly N moves, the way chess engines check their move
+ * generators with "perft". A won position is counted but not played on from, since the game is over. Along the way
+ * the wins and draws (full boards) at each depth up to N are counted too.
+ *
+ * The same count runs on any of the board models, through Board: the Connect4Game/Connect4Column objects that the
+ * agents play on, Connect4BitBoard, and MultiWordBitBoard. The counts check that a model plays and undoes moves and
+ * finds wins correctly, since they have to match REFERENCE_7X6 and each other, and the time shows how fast it does
+ * so. With more than one thread the moves from the start position are counted in parallel on a ForkJoinPool, each on
+ * its own copy of the board.
+ *
+ * Usage: java Perft [--depth N] [--board game|bitboard|multiword] [--threads T] [--moves COLUMNS]
+ * [--columns C --rows R --win K] [--check]
+ */
+public class Perft {
+    // the number of positions after 0, 1, 2, ... moves from the empty 7x6 board
+    public static final long[] REFERENCE_7X6 = {1, 7, 49, 343, 2401, 16807, 117649, 823536, 5673234, 39394572};
+
+    /**
+     * The operations perft needs from a board model.
+     */
+    public interface Board {
+        boolean canPlay(int col);
+
+        void play(int col);
+
+        void undo();
+
+        /**
+         * @return true if the last move played connected enough tokens to win
+         */
+        boolean lastMoveWon();
+
+        boolean isFull();
+
+        /**
+         * @return a copy that can be played on by another thread
+         */
+        Board copy();
+
+        int getColumnCount();
+    }
+
+    /**
+     * What perft found.
+     */
+    public static final class Counts {
+        public long positions; // positions exactly the requested number of moves from the start
+        public long wins; // won positions at any depth up to it, which aren't played on from
+        public long draws; // full boards without a winner at any depth up to it
+        public long visited; // every position counted, at every depth, for the speed
+
+        void add(Counts other) {
+            positions += other.positions;
+            wins += other.wins;
+            draws += other.draws;
+            visited += other.visited;
+        }
+    }
+
+    public static void main(String[] args) {
+        int depth = 7;
+        String boardName = "bitboard";
+        int threads = 1;
+        String moves = "";
+        int columns = 7, rows = 6, winLength = 4;
+        boolean check = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--depth")) depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--board")) boardName = args[++i];
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--moves")) moves = args[++i];
+            else if (args[i].equals("--columns")) columns = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--rows")) rows = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--win")) winLength = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--check")) check = true;
+        }
+
+        if (check) {
+            // every board model against the reference counts, from the empty 7x6 board
+            boolean passed = true;
+            for (String name : new String[]{"game", "bitboard", "multiword"}) {
+                for (int d = 0; d <= depth && d < REFERENCE_7X6.length; d++) {
+                    Counts counts = count(createBoard(name, 7, 6, 4), d, threads);
+                    boolean match = counts.positions == REFERENCE_7X6[d];
+                    passed &= match;
+                    System.out.printf("%-9s depth %2d: %12d %s%n", name, d, counts.positions,
+                            match ? "ok" : "expected " + REFERENCE_7X6[d]);
+                }
+            }
+            System.out.println(passed ? "All counts match." : "Some counts don't match!");
+            if (!passed) System.exit(1);
+            return;
+        }
+
+        Board board = createBoard(boardName, columns, rows, winLength);
+        for (char c : moves.toCharArray()) {
+            board.play(c - '0');
+        }
+        long start = System.nanoTime();
+        Counts counts = count(board, depth, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s board, depth %d, %d thread(s): %d positions, %d wins, %d draws%n", boardName, depth,
+                threads, counts.positions, counts.wins, counts.draws);
+        System.out.printf("%d positions visited in %.3f s: %.0f positions per second%n", counts.visited, seconds,
+                counts.visited / seconds);
+    }
+
+    /**
+     * Counts the positions from a board.
+     *
+     * @param board   the start position, which is played on and left as it was
+     * @param depth   the number of moves to look ahead
+     * @param threads the number of threads, 1 to count on this one
+     * @return the counts
+     */
+    public static Counts count(Board board, int depth, int threads) {
+        Counts counts = new Counts();
+        if (threads <= 1 || depth <= 1) {
+            counts.visited++;
+            if (depth == 0) counts.positions++;
+            else perft(board, depth, counts);
+            return counts;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            counts.visited++;
+            List<RecursiveTask<Counts>> tasks = new ArrayList<>();
+            for (int col = 0; col < board.getColumnCount(); col++) {
+                if (!board.canPlay(col)) continue;
+                Board child = board.copy();
+                child.play(col);
+                tasks.add(new RecursiveTask<Counts>() {
+                    @Override
+                    protected Counts compute() {
+                        Counts childCounts = new Counts();
+                        countChild(child, depth - 1, childCounts);
+                        return childCounts;
+                    }
+                });
+            }
+            for (RecursiveTask<Counts> task : tasks) {
+                pool.execute(task);
+            }
+            for (RecursiveTask<Counts> task : tasks) {
+                counts.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the moves from a position that isn't won or full.
+     */
+    private static void perft(Board board, int depth, Counts counts) {
+        for (int col = 0; col < board.getColumnCount(); col++) {
+            if (!board.canPlay(col)) continue;
+            board.play(col);
+            countChild(board, depth - 1, counts);
+            board.undo();
+        }
+    }
+
+    /**
+     * Counts a position just played into, and the positions after it.
+     */
+    private static void countChild(Board board, int depth, Counts counts) {
+        counts.visited++;
+        if (board.lastMoveWon()) {
+            counts.wins++;
+            if (depth == 0) counts.positions++;
+        } else if (board.isFull()) {
+            counts.draws++;
+            if (depth == 0) counts.positions++;
+        } else if (depth == 0) {
+            counts.positions++;
+        } else {
+            perft(board, depth, counts);
+        }
+    }
+
+    /**
+     * Creates an empty board of one of the models.
+     *
+     * @param name "game", "bitboard" or "multiword"
+     * @return the board
+     */
+    public static Board createBoard(String name, int columns, int rows, int winLength) {
+        switch (name) {
+            case "game":
+                Connect4Game game = new Connect4Game(columns, rows, winLength);
+                game.setRedPlayedFirst(true);
+                return new GameBoard(game);
+            case "bitboard":
+                if (winLength != 4) throw new IllegalArgumentException("Connect4BitBoard only plays four in a row.");
+                return new BitBoard(new Connect4BitBoard(columns, rows));
+            case "multiword":
+                return new MultiWordBoard(new MultiWordBitBoard(columns, rows, winLength));
+            default:
+                throw new IllegalArgumentException("Unknown board " + name + "; use game, bitboard or multiword.");
+        }
+    }
+
+    /**
+     * The Connect4Game object model, through play(), undo() and gameWon().
+     */
+    private static final class GameBoard implements Board {
+        private final Connect4Game game;
+
+        GameBoard(Connect4Game game) {
+            this.game = game;
+        }
+
+        public boolean canPlay(int col) {
+            return (game.getLegalMoveMask() >>> col & 1) != 0;
+        }
+
+        public void play(int col) {
+            game.play(col);
+        }
+
+        public void undo() {
+            game.undo();
+        }
+
+        public boolean lastMoveWon() {
+            return game.gameWon() != 'N';
+        }
+
+        public boolean isFull() {
+            return game.boardFull();
+        }
+
+        public Board copy() {
+            return new GameBoard(new Connect4Game(game));
+        }
+
+        public int getColumnCount() {
+            return game.getColumnCount();
+        }
+    }
+
+    private static final class BitBoard implements Board {
+        private final Connect4BitBoard board;
+
+        BitBoard(Connect4BitBoard board) {
+            this.board = board;
+        }
+
+        public boolean canPlay(int col) {
+            return board.canPlay(col);
+        }
+
+        public void play(int col) {
+            board.play(col);
+        }
+
+        public void undo() {
+            board.undo();
+        }
+
+        public boolean lastMoveWon() {
+            return board.lastMoveWon();
+        }
+
+        public boolean isFull() {
+            return board.isFull();
+        }
+
+        public Board copy() {
+            return new BitBoard(new Connect4BitBoard(board));
+        }
+
+        public int getColumnCount() {
+            return board.getColumnCount();
+        }
+    }
+
+    private static final class MultiWordBoard implements Board {
+        private final MultiWordBitBoard board;
+
+        MultiWordBoard(MultiWordBitBoard board) {
+            this.board = board;
+        }
+
+        public boolean canPlay(int col) {
+            return board.canPlay(col);
+        }
+
+        public void play(int col) {
+            board.play(col);
+        }
+
+        public void undo() {
+            board.undo();
+        }
+
+        public boolean lastMoveWon() {
+            return board.lastMoveWon();
+        }
+
+        public boolean isFull() {
+            return board.isFull();
+        }
+
+        public Board copy() {
+            return new MultiWordBoard(new MultiWordBitBoard(board));
+        }
+
+        public int getColumnCount() {
+            return board.getColumnCount();
+        }
+    }
+}
@@ -14,10 +14,7 @@ public class RandomAgent extends Agent {
 
     public void move() {
         if (!this.myGame.boardFull()) {
-            int var1;
-            for(var1 = this.r.nextInt(this.myGame.getColumnCount()); this.getTopEmptySlot(this.myGame.getColumn(var1)) == null; var1 = this.r.nextInt(this.myGame.getColumnCount())) {
-            }
-
+            int var1 = this.myGame.getLegalMove(this.r.nextInt(this.myGame.getLegalMoveCount()));
             this.moveOnColumn(this.myGame, var1);
         }
 
@@ -36,14 +33,7 @@ public class RandomAgent extends Agent {
     }
 
     public Connect4Slot getTopEmptySlot(Connect4Column var1) {
-        int var2 = -1;
-
-        for(int var3 = 0; var3 < var1.getRowCount(); ++var3) {
-            if (!var1.getSlot(var3).getIsFilled()) {
-                var2 = var3;
-            }
-        }
-
+        int var2 = var1.getTopEmptyIndex();
         if (var2 < 0) {
             return null;
         } else {
@@ -51,6 +41,10 @@ public class RandomAgent extends Agent {
         }
     }
 
+    public void reseed(long var1) {
+        this.r.setSeed(var1);
+    }
+
     public String getName() {
         return "Random Agent";
     }
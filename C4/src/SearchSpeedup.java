@@ -0,0 +1,82 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how much faster MyAgent's search gets with more threads. A fixed set of positions is built from seeded random
+ * openings, and each position is searched to the same depth with 1, 2, ... N threads, starting every search with an
+ * empty transposition table.
+ *
+ * Usage: java SearchSpeedup [--threads N] [--depth D] [--positions P] [--seed S]
+ */
+public class SearchSpeedup {
+    public static void main(String[] args) {
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int depth = 12;
+        int numPositions = 20;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads")) maxThreads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--depth")) depth = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--positions")) numPositions = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+        }
+
+        List<Connect4Game> positions = buildPositions(numPositions, new Random(seed));
+        System.out.printf("%d positions searched to depth %d, seed %d%n", numPositions, depth, seed);
+        System.out.println("threads      time (ms)   speedup");
+
+        searchAll(positions, 1, depth); // warm up the JIT before timing anything
+        double serialMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            double millis = searchAll(positions, threads, depth);
+            if (threads == 1) serialMillis = millis;
+            System.out.printf("%7d %14.1f %9.2fx%n", threads, millis, serialMillis / millis);
+        }
+    }
+
+    /**
+     * Plays random openings of 4 to 12 moves, keeping only positions where nobody has won yet.
+     *
+     * @param numPositions the number of positions to build
+     * @param r            the random number generator choosing the moves
+     * @return the positions, each with red having moved first
+     */
+    private static List<Connect4Game> buildPositions(int numPositions, Random r) {
+        List<Connect4Game> positions = new ArrayList<>();
+        while (positions.size() < numPositions) {
+            Connect4Game game = new Connect4Game(7, 6);
+            game.setRedPlayedFirst(true);
+            int moves = 4 + r.nextInt(9);
+            for (int i = 0; i < moves && game.gameWon() == 'N'; i++) {
+                game.play(game.getLegalMove(r.nextInt(game.getLegalMoveCount())));
+            }
+            if (game.gameWon() == 'N' && !game.boardFull()) positions.add(game);
+        }
+        return positions;
+    }
+
+    /**
+     * Searches every position once with a new agent, so no search starts with anything in its table.
+     *
+     * @param positions the positions to search
+     * @param threads   the number of threads each search uses
+     * @param depth     the depth of each search
+     * @return the total time spent searching, in milliseconds
+     */
+    private static double searchAll(List<Connect4Game> positions, int threads, int depth) {
+        long total = 0;
+        for (Connect4Game position : positions) {
+            Connect4Game game = new Connect4Game(position);
+            MyAgent agent = new MyAgent(game, game.sideToMove() == 'R');
+            agent.setSearchDepth(depth);
+            agent.setSearchThreads(threads);
+
+            long start = System.nanoTime();
+            agent.move();
+            total += System.nanoTime() - start;
+            agent.shutdownHelpers();
+        }
+        return total / 1e6;
+    }
+}
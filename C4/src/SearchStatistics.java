@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * Counts what MyAgent's search did, for one move or added up over many, so a slow or weak search can be looked into
+ * and runs can be compared. The search only increments the counters; the rates are worked out when they are read.
+ */
+public class SearchStatistics {
+    // public like GamesStatistics, since the search increments them directly
+    public long moves; // the moves the statistics cover
+    public long nodes; // positions the search expanded
+    public long leaves; // positions scored by the heuristic, or found won or full
+    public long[] cutoffsByMove; // beta cutoffs by the index of the move that caused them, in the order tried
+    public long tableProbes;
+    public long tableHits;
+    public long bookProbes;
+    public long bookHits;
+    public long solvedMoves; // moves found by the endgame solver instead of the search
+    public long solverNodes;
+    public int maxDepth; // the deepest iteration that finished
+    public long elapsedNanos;
+
+    private double branchingLogSum; // the log of each move's effective branching factor, to average them
+    private long branchingMoves;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param columnCount the number of columns, which is the most moves a position can have
+     */
+    public SearchStatistics(int columnCount) {
+        cutoffsByMove = new long[columnCount];
+    }
+
+    /**
+     * Empties the statistics, so they can be used for another move.
+     */
+    public void clear() {
+        moves = nodes = leaves = tableProbes = tableHits = bookProbes = bookHits = solvedMoves = solverNodes = 0;
+        Arrays.fill(cutoffsByMove, 0);
+        maxDepth = 0;
+        elapsedNanos = 0;
+        branchingLogSum = 0;
+        branchingMoves = 0;
+    }
+
+    /**
+     * Records the end of a search, working out its effective branching factor: the number of children each position
+     * would need for a tree that deep to have as many positions as the search visited.
+     *
+     * @param searchNodes the nodes and leaves of the whole search
+     * @param depth       the depth of the deepest iteration that finished
+     */
+    public void searchFinished(long searchNodes, int depth) {
+        maxDepth = Math.max(maxDepth, depth);
+        if (depth > 0 && searchNodes > 1) {
+            branchingLogSum += Math.log(searchNodes) / depth;
+            branchingMoves++;
+        }
+    }
+
+    /**
+     * Adds the statistics of other moves, such as another game's or another worker's.
+     *
+     * @param other the statistics to add to these
+     */
+    public void add(SearchStatistics other) {
+        moves += other.moves;
+        nodes += other.nodes;
+        leaves += other.leaves;
+        if (other.cutoffsByMove.length > cutoffsByMove.length) {
+            cutoffsByMove = Arrays.copyOf(cutoffsByMove, other.cutoffsByMove.length);
+        }
+        for (int i = 0; i < other.cutoffsByMove.length; i++) {
+            cutoffsByMove[i] += other.cutoffsByMove[i];
+        }
+        tableProbes += other.tableProbes;
+        tableHits += other.tableHits;
+        bookProbes += other.bookProbes;
+        bookHits += other.bookHits;
+        solvedMoves += other.solvedMoves;
+        solverNodes += other.solverNodes;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        elapsedNanos += other.elapsedNanos;
+        branchingLogSum += other.branchingLogSum;
+        branchingMoves += other.branchingMoves;
+    }
+
+    /**
+     * @return the number of beta cutoffs
+     */
+    public long cutoffs() {
+        long cutoffs = 0;
+        for (long c : cutoffsByMove) cutoffs += c;
+        return cutoffs;
+    }
+
+    /**
+     * @return the fraction of cutoffs caused by the first move tried, which is high when moves are well ordered
+     */
+    public double firstMoveCutoffRate() {
+        long cutoffs = cutoffs();
+        return cutoffs == 0 ? 0 : (double) cutoffsByMove[0] / cutoffs;
+    }
+
+    /**
+     * @return the geometric mean of the effective branching factor of every search, or 0 if there was none
+     */
+    public double effectiveBranchingFactor() {
+        return branchingMoves == 0 ? 0 : Math.exp(branchingLogSum / branchingMoves);
+    }
+
+    /**
+     * @return the fraction of transposition table probes that found the position
+     */
+    public double tableHitRate() {
+        return tableProbes == 0 ? 0 : (double) tableHits / tableProbes;
+    }
+
+    /**
+     * @return the fraction of moves answered by the opening book, out of the moves it was asked about
+     */
+    public double bookHitRate() {
+        return bookProbes == 0 ? 0 : (double) bookHits / bookProbes;
+    }
+
+    /**
+     * @return the search's nodes and leaves per second
+     */
+    public double nodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : (nodes + leaves) / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Prints out the statistics.
+     */
+    public void printStatistics() {
+        System.out.printf("Moves: %d, %.2f ms per move\n", moves, moves == 0 ? 0 : elapsedNanos / 1e6 / moves);
+        System.out.printf("Nodes: %d, leaves: %d (%.0f per second)\n", nodes, leaves, nodesPerSecond());
+        System.out.printf("Cutoffs: %d, %.1f%% by the first move\n", cutoffs(), firstMoveCutoffRate() * 100);
+        System.out.printf("Effective branching factor: %.2f, deepest iteration: %d\n", effectiveBranchingFactor(),
+                maxDepth);
+        System.out.printf("Table hit rate: %.1f%%, book hit rate: %.1f%%\n", tableHitRate() * 100,
+                bookHitRate() * 100);
+        System.out.printf("Moves solved: %d (%d solver nodes)\n", solvedMoves, solverNodes);
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * A fixed-size transposition table for MyAgent's search, keyed by Zobrist hashes.
+ *
+ * The table is two parallel long arrays. Each bucket holds two entries: the first keeps the result
+ * of the deepest search (unless it is from an older move, in which case anything may replace it)
+ * and the second always takes the newest result. An entry packs its score, depth, bound type, best
+ * column and generation into one long, and the key is stored xor-ed with that long so a torn read
+ * from another thread is rejected as a miss instead of returning a mix of two entries.
+ */
+public class TranspositionTable {
+    // bound types: the stored score is exact, a lower bound (the search failed high) or an upper bound (it failed low)
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    // returned by probe() when the position is not in the table
+    public static final long MISS = 0;
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * Creates an empty table.
+     *
+     * @param bucketBits the table holds 2^bucketBits buckets of two entries each
+     */
+    public TranspositionTable(int bucketBits) {
+        keys = new long[2 << bucketBits];
+        entries = new long[2 << bucketBits];
+        bucketMask = (1 << bucketBits) - 1;
+    }
+
+    /**
+     * Looks a position up.
+     *
+     * @param hash the position's Zobrist hash
+     * @return the packed entry for the position, or MISS
+     */
+    public long probe(long hash) {
+        int slot = ((int) hash & bucketMask) << 1;
+        for (int i = slot; i < slot + 2; i++) {
+            long entry = entries[i];
+            if (entry != MISS && (keys[i] ^ entry) == hash) {
+                return entry;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores the result of searching a position.
+     *
+     * @param hash     the position's Zobrist hash
+     * @param depth    how many moves deep the position was searched
+     * @param bound    EXACT, LOWER or UPPER
+     * @param score    the search score
+     * @param bestMove the best column found, or -1 if there was none
+     */
+    public void store(long hash, int depth, int bound, int score, int bestMove) {
+        long entry = pack(depth, bound, score, bestMove);
+        int slot = ((int) hash & bucketMask) << 1;
+
+        long old = entries[slot];
+        boolean sameKey = old != MISS && (keys[slot] ^ old) == hash;
+        if (old == MISS || sameKey || generation(old) != generation || depth >= depth(old)) {
+            entries[slot] = entry;
+            keys[slot] = hash ^ entry;
+        } else {
+            entries[slot + 1] = entry;
+            keys[slot + 1] = hash ^ entry;
+        }
+    }
+
+    /**
+     * Starts a new move. Entries from earlier moves stay usable but no longer keep their
+     * depth-preferred slot.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, MISS);
+        generation = 0;
+    }
+
+    // entry layout: score in the low 32 bits, then 8 bits of depth, 2 of bound, 8 of best column + 1 and 8 of generation
+    private long pack(int depth, int bound, int score, int bestMove) {
+        return (score & 0xFFFFFFFFL)
+                | (long) depth << 32
+                | (long) bound << 40
+                | (long) (bestMove + 1) << 42
+                | (long) generation << 50;
+    }
+
+    /**
+     * @param entry a packed entry returned by probe()
+     * @return the entry's score
+     */
+    public static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @param entry a packed entry returned by probe()
+     * @return how many moves deep the entry's position was searched
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * @param entry a packed entry returned by probe()
+     * @return EXACT, LOWER or UPPER
+     */
+    public static int bound(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    /**
+     * @param entry a packed entry returned by probe()
+     * @return the best column found for the entry's position, or -1 if there was none
+     */
+    public static int bestMove(long entry) {
+        return ((int) (entry >>> 42) & 0xFF) - 1;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 50) & 0xFF;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Finds the columns where a player could drop a token and complete four in a row, from the packed tokens kept by
+ * Connect4Game, in a few shifts and masks for the whole board. Which lines count is chosen with pattern flags, so
+ * each of the baseline agents can ask for exactly the lines its hand-written checks looked for and no more.
+ *
+ * The packed layout is the one used by Connect4BitBoard: column-major, rows counted from the bottom, with a spare bit
+ * on top of each column so that lines can't wrap from one column into the next. Boards too big for that layout are
+ * checked slot by slot with the same patterns.
+ */
+public final class WinningMoves {
+    public static final int VERTICAL = 1; // on top of three in a column
+    public static final int HORIZONTAL_ENDS = 2; // beside three in a row
+    public static final int HORIZONTAL_GAPS = 4; // in the gap of a broken row
+    public static final int DIAGONAL_ENDS = 8; // beside three in a diagonal
+    public static final int DIAGONAL_GAPS = 16; // in the gap of a broken diagonal
+    public static final int ALL = VERTICAL | HORIZONTAL_ENDS | HORIZONTAL_GAPS | DIAGONAL_ENDS | DIAGONAL_GAPS;
+
+    private WinningMoves() {
+    }
+
+    /**
+     * Finds the lowest-numbered column where a token would complete one of the chosen lines, the column the baseline
+     * agents' canWin() returns.
+     *
+     * @param game     the game to look at
+     * @param red      whether to look for red's lines
+     * @param patterns the lines to look for, an or of the pattern flags
+     * @return the column, or -1 if there is none
+     */
+    public static int firstColumn(Connect4Game game, boolean red, int patterns) {
+        if (!game.isPacked()) return firstColumnBySlots(game, red, patterns);
+        int stride = game.getRowCount() + 1;
+        long cells = cells(game.getTokenBits(red), stride, patterns) & playableCells(game);
+        return cells == 0 ? -1 : Long.numberOfTrailingZeros(cells) / stride;
+    }
+
+    /**
+     * Finds every column where a token would complete one of the chosen lines.
+     *
+     * @param game     the game to look at
+     * @param red      whether to look for red's lines
+     * @param patterns the lines to look for, an or of the pattern flags
+     * @return a mask with bit i set if column i wins
+     */
+    public static int columns(Connect4Game game, boolean red, int patterns) {
+        if (!game.isPacked()) {
+            int columns = 0;
+            for (int col = 0; col < game.getColumnCount(); col++) {
+                if (winsAt(game, red, col, patterns)) columns |= 1 << col;
+            }
+            return columns;
+        }
+        int stride = game.getRowCount() + 1;
+        long cells = cells(game.getTokenBits(red), stride, patterns) & playableCells(game);
+        int columns = 0;
+        while (cells != 0) {
+            columns |= 1 << (Long.numberOfTrailingZeros(cells) / stride);
+            cells &= cells - 1;
+        }
+        return columns;
+    }
+
+    /**
+     * Finds the cell a token dropped into each column would land in: the first empty slot from the bottom, which is
+     * where adding the bottom bit to the filled slots carries to, even with tokens floating above a gap.
+     */
+    private static long playableCells(Connect4Game game) {
+        int stride = game.getRowCount() + 1;
+        long bottom = 0;
+        for (int col = 0; col < game.getColumnCount(); col++) {
+            bottom |= 1L << (col * stride);
+        }
+        long filled = game.getFilledBits();
+        return (filled + bottom) & ~filled & bottom * ((1L << game.getRowCount()) - 1);
+    }
+
+    /**
+     * Finds the cells that complete one of the chosen lines with three of a player's tokens. The result can include
+     * occupied cells and sentinel bits, which the caller masks off.
+     *
+     * @param tokens   the tokens of one player
+     * @param stride   the number of bits per column
+     * @param patterns the lines to look for, an or of the pattern flags
+     * @return the cells that would give the player four in a row
+     */
+    static long cells(long tokens, int stride, int patterns) {
+        long cells = 0;
+        if ((patterns & VERTICAL) != 0) cells = (tokens << 1) & (tokens << 2) & (tokens << 3);
+        cells |= lineCells(tokens, stride, patterns & HORIZONTAL_ENDS, patterns & HORIZONTAL_GAPS);
+        cells |= lineCells(tokens, stride - 1, patterns & DIAGONAL_ENDS, patterns & DIAGONAL_GAPS); // down to the right
+        return cells | lineCells(tokens, stride + 1, patterns & DIAGONAL_ENDS, patterns & DIAGONAL_GAPS); // up to the right
+    }
+
+    /**
+     * @return the cells that complete a line of four in one direction, beyond either end of three in a row and/or in
+     * either gap of a broken line
+     */
+    private static long lineCells(long tokens, int step, int ends, int gaps) {
+        long before = (tokens << step) & (tokens << (2 * step)); // the two tokens before a cell
+        long after = (tokens >>> step) & (tokens >>> (2 * step)); // the two tokens after a cell
+        long cells = 0;
+        if (ends != 0) cells = before & (tokens << (3 * step)) | after & (tokens >>> (3 * step));
+        if (gaps != 0) cells |= before & (tokens >>> step) | after & (tokens << step);
+        return cells;
+    }
+
+    private static int firstColumnBySlots(Connect4Game game, boolean red, int patterns) {
+        for (int col = 0; col < game.getColumnCount(); col++) {
+            if (winsAt(game, red, col, patterns)) return col;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks one column slot by slot, for boards too big to pack.
+     */
+    private static boolean winsAt(Connect4Game game, boolean red, int col, int patterns) {
+        int row = game.getColumn(col).getTopEmptyIndex();
+        if (row < 0) return false;
+        if ((patterns & VERTICAL) != 0 && owns(game, red, col, row + 1) && owns(game, red, col, row + 2)
+                && owns(game, red, col, row + 3)) {
+            return true;
+        }
+        return lineWins(game, red, col, row, 1, 0, patterns & HORIZONTAL_ENDS, patterns & HORIZONTAL_GAPS)
+                || lineWins(game, red, col, row, 1, 1, patterns & DIAGONAL_ENDS, patterns & DIAGONAL_GAPS)
+                || lineWins(game, red, col, row, 1, -1, patterns & DIAGONAL_ENDS, patterns & DIAGONAL_GAPS);
+    }
+
+    /**
+     * Checks the four lines of four through a slot in one direction, for winsAt(). The slot is at an end of the first
+     * and last of them and in a gap of the other two.
+     */
+    private static boolean lineWins(Connect4Game game, boolean red, int col, int row, int dc, int dr, int ends,
+            int gaps) {
+        for (int start = -3; start <= 0; start++) {
+            boolean atEnd = start == -3 || start == 0;
+            if (atEnd ? ends == 0 : gaps == 0) continue;
+            boolean line = true;
+            for (int i = start; i < start + 4 && line; i++) {
+                line = i == 0 || owns(game, red, col + i * dc, row + i * dr);
+            }
+            if (line) return true;
+        }
+        return false;
+    }
+
+    private static boolean owns(Connect4Game game, boolean red, int col, int row) {
+        Connect4Column column = game.getColumn(col);
+        Connect4Slot slot = column == null ? null : column.getSlot(row);
+        return slot != null && slot.getIsFilled() && slot.getIsRed() == red;
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing for Connect 4 positions. Every (color, column, row) gets a fixed random key and a
+ * position's hash is the xor of the keys of its tokens, plus RED_TO_MOVE when red is the next
+ * player. Adding or removing a token is then one xor, so boards can keep their hash up to date
+ * as they change.
+ */
+public final class Zobrist {
+    public static final int MAX_COLUMNS = 32;
+    public static final int MAX_ROWS = 32;
+
+    // xor-ed into the hash while red is the next player to move
+    public static final long RED_TO_MOVE;
+
+    private static final long[] KEYS = new long[2 * MAX_COLUMNS * MAX_ROWS];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_C4C4L); // fixed, so hashes are the same on every run
+        for (int i = 0; i < KEYS.length; i++) {
+            KEYS[i] = random.nextLong();
+        }
+        RED_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the key of one token.
+     *
+     * @param red whether the token is red
+     * @param col the column of the token
+     * @param row the row of the token, counted from the bottom of the column
+     * @return the key to xor into a hash when the token is added or removed
+     */
+    public static long key(boolean red, int col, int row) {
+        return KEYS[((red ? MAX_COLUMNS : 0) + col) * MAX_ROWS + row];
+    }
+}